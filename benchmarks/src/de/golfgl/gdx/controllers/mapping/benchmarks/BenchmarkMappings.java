@@ -0,0 +1,81 @@
+package de.golfgl.gdx.controllers.mapping.benchmarks;
+
+import com.badlogic.gdx.controllers.Controller;
+
+import de.golfgl.gdx.controllers.mapping.ConfiguredInput;
+import de.golfgl.gdx.controllers.mapping.ControllerMappings;
+import de.golfgl.gdx.controllers.testsupport.VirtualController;
+
+/**
+ * Configuration shared by all benchmarks: a typical game setup with buttons, an analog axis, a digital axis on two
+ * buttons and an axis only accepting analog input.
+ */
+public class BenchmarkMappings {
+    public static final int BUTTON_JUMP = 1;
+    public static final int BUTTON_FIRE = 2;
+    public static final int AXIS_HORIZONTAL = 3;
+    public static final int AXIS_VERTICAL = 4;
+    public static final int AXIS_AIM = 5;
+
+    public static final int CONTROLLER_BUTTONS = 16;
+    public static final int CONTROLLER_AXIS = 4;
+    /**
+     * values the axis run through, covering resting, analog and full deflection
+     */
+    public static final float[] AXIS_SCRIPT = {0, .1f, .35f, .6f, .85f, 1f, .7f, .2f, -.3f, -.65f, -.95f, -.4f};
+
+    public static ControllerMappings createMappings() {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, BUTTON_JUMP));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, BUTTON_FIRE));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, AXIS_HORIZONTAL));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisDigital, AXIS_VERTICAL));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisAnalog, AXIS_AIM));
+        mappings.commitConfig();
+        return mappings;
+    }
+
+    /**
+     * @return connected controllers with different names, so every one has its own mapping
+     */
+    public static VirtualController[] createControllers(int count) {
+        VirtualController[] controllers = new VirtualController[count];
+        for (int i = 0; i < count; i++) {
+            controllers[i] = new VirtualController("Virtual Pad " + i, CONTROLLER_BUTTONS, CONTROLLER_AXIS);
+            controllers[i].connect();
+        }
+        return controllers;
+    }
+
+    /**
+     * moves every axis of the controller to the script value at the given position, each axis with an offset so
+     * they differ
+     */
+    public static void step(VirtualController controller, int position) {
+        for (int i = 0; i < CONTROLLER_AXIS; i++)
+            controller.setAxis(i, AXIS_SCRIPT[(position + i) % AXIS_SCRIPT.length]);
+    }
+
+    /**
+     * records all configured inputs: jump and fire on button 0 and 1, horizontal on axis 0, vertical on buttons 2
+     * and 3, aim on axis 1
+     *
+     * @return true if all inputs were recorded
+     */
+    public static boolean recordMapping(ControllerMappings mappings, Controller controller) {
+        return mappings.recordMapping(controller, BUTTON_JUMP, 0, -1) == ControllerMappings.RecordResult.recorded
+                & mappings.recordMapping(controller, BUTTON_FIRE, 1, -1) == ControllerMappings.RecordResult.recorded
+                & mappings.recordMapping(controller, AXIS_HORIZONTAL, -1, 0) == ControllerMappings.RecordResult.recorded
+                & mappings.recordMapping(controller, AXIS_VERTICAL, 2, -1) == ControllerMappings.RecordResult.need_second_button
+                & mappings.recordMapping(controller, AXIS_VERTICAL, 3, -1) == ControllerMappings.RecordResult.recorded
+                & mappings.recordMapping(controller, AXIS_AIM, -1, 1) == ControllerMappings.RecordResult.recorded;
+    }
+
+    public static ControllerMappings createRecordedMappings(Controller[] controllers) {
+        ControllerMappings mappings = createMappings();
+        for (Controller controller : controllers)
+            if (!recordMapping(mappings, controller))
+                throw new IllegalStateException("Benchmark mapping could not be recorded");
+        return mappings;
+    }
+}
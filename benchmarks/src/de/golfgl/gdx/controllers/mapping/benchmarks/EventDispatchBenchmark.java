@@ -0,0 +1,130 @@
+package de.golfgl.gdx.controllers.mapping.benchmarks;
+
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.controllers.Controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.golfgl.gdx.controllers.mapping.ControllerMappings;
+import de.golfgl.gdx.controllers.mapping.ControllerToInputAdapter;
+import de.golfgl.gdx.controllers.mapping.MappedControllerAdapter;
+import de.golfgl.gdx.controllers.testsupport.VirtualController;
+
+/**
+ * Cost of a single controller event through {@link MappedControllerAdapter} and {@link ControllerToInputAdapter}.
+ * Events are sent by all controllers in turn.
+ */
+@State(Scope.Thread)
+public class EventDispatchBenchmark {
+    @Param({"1", "4", "16"})
+    public int controllerCount;
+
+    private VirtualController[] controllers;
+    private CountingAdapter adapter;
+    private ControllerToInputAdapter inputAdapter;
+    private int eventCount;
+
+    @Setup
+    public void setup() {
+        controllers = BenchmarkMappings.createControllers(controllerCount);
+        ControllerMappings mappings = BenchmarkMappings.createRecordedMappings(controllers);
+
+        adapter = new CountingAdapter(mappings);
+
+        inputAdapter = new ControllerToInputAdapter(mappings);
+        inputAdapter.addButtonMapping(BenchmarkMappings.BUTTON_JUMP, 62);
+        inputAdapter.addAxisMapping(BenchmarkMappings.AXIS_HORIZONTAL, 21, 22);
+        inputAdapter.setInputProcessor(new InputAdapter() {
+            @Override
+            public boolean keyDown(int keycode) {
+                return true;
+            }
+
+            @Override
+            public boolean keyUp(int keycode) {
+                return true;
+            }
+        });
+
+        // resolve mappings before measuring
+        for (Controller controller : controllers) {
+            adapter.buttonUp(controller, 0);
+            inputAdapter.buttonUp(controller, 0);
+        }
+    }
+
+    private Controller nextController() {
+        eventCount++;
+        return controllers[eventCount % controllerCount];
+    }
+
+    private float nextAxisValue() {
+        return BenchmarkMappings.AXIS_SCRIPT[eventCount % BenchmarkMappings.AXIS_SCRIPT.length];
+    }
+
+    @Benchmark
+    public boolean buttonChange() {
+        Controller controller = nextController();
+        return adapter.buttonDown(controller, 0) & adapter.buttonUp(controller, 0);
+    }
+
+    @Benchmark
+    public boolean buttonToDigitalAxis() {
+        Controller controller = nextController();
+        return adapter.buttonDown(controller, 2) & adapter.buttonUp(controller, 2);
+    }
+
+    @Benchmark
+    public boolean axisMoved() {
+        Controller controller = nextController();
+        return adapter.axisMoved(controller, 0, nextAxisValue());
+    }
+
+    @Benchmark
+    public boolean unmappedAxisMoved() {
+        Controller controller = nextController();
+        return adapter.axisMoved(controller, 3, nextAxisValue());
+    }
+
+    @Benchmark
+    public boolean toInputAdapterConfiguredAxisMoved() {
+        Controller controller = nextController();
+        return inputAdapter.configuredAxisMoved(controller, BenchmarkMappings.AXIS_HORIZONTAL, nextAxisValue());
+    }
+
+    @Benchmark
+    public boolean toInputAdapterAxisMoved() {
+        Controller controller = nextController();
+        return inputAdapter.axisMoved(controller, 0, nextAxisValue());
+    }
+
+    private static class CountingAdapter extends MappedControllerAdapter {
+        private int eventCount;
+
+        private CountingAdapter(ControllerMappings mappings) {
+            super(mappings);
+        }
+
+        @Override
+        public boolean configuredButtonDown(Controller controller, int buttonId) {
+            eventCount++;
+            return true;
+        }
+
+        @Override
+        public boolean configuredButtonUp(Controller controller, int buttonId) {
+            eventCount++;
+            return true;
+        }
+
+        @Override
+        public boolean configuredAxisMoved(Controller controller, int axisId, float value) {
+            eventCount++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.golfgl.gdx.controllers.mapping.benchmarks;
+
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import de.golfgl.gdx.controllers.mapping.ControllerMappings;
+
+/**
+ * Cost of saving and loading the mappings of all controllers, as tree and streaming
+ */
+@State(Scope.Thread)
+public class JsonBenchmark {
+    @Param({"1", "4", "16"})
+    public int controllerCount;
+
+    private ControllerMappings mappings;
+    private String json;
+    private JsonValue jsonValue;
+    private StringWriter writer;
+
+    @Setup
+    public void setup() {
+        mappings = BenchmarkMappings.createRecordedMappings(BenchmarkMappings.createControllers(controllerCount));
+        json = mappings.toJson().toJson(JsonWriter.OutputType.json);
+        jsonValue = new JsonReader().parse(json);
+        writer = new StringWriter(json.length() * 2);
+    }
+
+    @Benchmark
+    public JsonValue toJson() {
+        return mappings.toJson();
+    }
+
+    @Benchmark
+    public int writeJson() throws IOException {
+        writer.getBuffer().setLength(0);
+        mappings.writeJson(writer);
+        return writer.getBuffer().length();
+    }
+
+    @Benchmark
+    public boolean fillFromJsonValue() {
+        return mappings.fillFromJson(jsonValue);
+    }
+
+    @Benchmark
+    public boolean fillFromJsonString() {
+        return mappings.fillFromJson(new JsonReader().parse(json));
+    }
+
+    @Benchmark
+    public boolean fillFromJsonStreaming() {
+        return mappings.fillFromJson(new StringReader(json));
+    }
+}
@@ -0,0 +1,66 @@
+package de.golfgl.gdx.controllers.mapping.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.golfgl.gdx.controllers.mapping.ControllerMappings;
+import de.golfgl.gdx.controllers.mapping.MappedController;
+import de.golfgl.gdx.controllers.testsupport.VirtualController;
+
+/**
+ * Cost of reading mapped inputs with {@link MappedController}, directly and with a snapshot taken by
+ * {@link MappedController#poll()}. All controllers are read in turn.
+ */
+@State(Scope.Thread)
+public class PollingBenchmark {
+    @Param({"1", "4", "16"})
+    public int controllerCount;
+
+    private VirtualController[] controllers;
+    private MappedController[] mappedControllers;
+    private int readCount;
+
+    @Setup
+    public void setup() {
+        controllers = BenchmarkMappings.createControllers(controllerCount);
+        ControllerMappings mappings = BenchmarkMappings.createRecordedMappings(controllers);
+
+        mappedControllers = new MappedController[controllerCount];
+        for (int i = 0; i < controllerCount; i++)
+            mappedControllers[i] = new MappedController(controllers[i], mappings);
+    }
+
+    private int nextIndex() {
+        readCount++;
+        int index = readCount % controllerCount;
+        BenchmarkMappings.step(controllers[index], readCount);
+        return index;
+    }
+
+    @Benchmark
+    public float getConfiguredAxisValue() {
+        MappedController mappedController = mappedControllers[nextIndex()];
+        return mappedController.getConfiguredAxisValue(BenchmarkMappings.AXIS_HORIZONTAL)
+                + mappedController.getConfiguredAxisValue(BenchmarkMappings.AXIS_VERTICAL)
+                + mappedController.getConfiguredAxisValue(BenchmarkMappings.AXIS_AIM);
+    }
+
+    @Benchmark
+    public boolean isButtonPressed() {
+        MappedController mappedController = mappedControllers[nextIndex()];
+        return mappedController.isButtonPressed(BenchmarkMappings.BUTTON_JUMP)
+                | mappedController.isButtonPressed(BenchmarkMappings.BUTTON_FIRE);
+    }
+
+    @Benchmark
+    public float pollAndRead() {
+        MappedController mappedController = mappedControllers[nextIndex()];
+        mappedController.poll();
+        return mappedController.getConfiguredAxisValue(BenchmarkMappings.AXIS_HORIZONTAL)
+                + mappedController.getConfiguredAxisValue(BenchmarkMappings.AXIS_VERTICAL)
+                + mappedController.getConfiguredAxisValue(BenchmarkMappings.AXIS_AIM);
+    }
+}
@@ -0,0 +1,46 @@
+package de.golfgl.gdx.controllers.mapping.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.golfgl.gdx.controllers.mapping.ControllerMappings;
+import de.golfgl.gdx.controllers.testsupport.VirtualController;
+
+/**
+ * Cost of resetting and recording the complete mapping of a controller, while the other controllers keep their
+ * mappings.
+ */
+@State(Scope.Thread)
+public class RecordingBenchmark {
+    @Param({"1", "4", "16"})
+    public int controllerCount;
+
+    private VirtualController[] controllers;
+    private ControllerMappings mappings;
+    private int recordCount;
+
+    @Setup
+    public void setup() {
+        controllers = BenchmarkMappings.createControllers(controllerCount);
+        mappings = BenchmarkMappings.createRecordedMappings(controllers);
+    }
+
+    @Benchmark
+    public boolean resetAndRecord() {
+        recordCount++;
+        VirtualController controller = controllers[recordCount % controllerCount];
+        mappings.resetMappings(controller);
+        return BenchmarkMappings.recordMapping(mappings, controller);
+    }
+
+    @Benchmark
+    public ControllerMappings.RecordResult recordPolled() {
+        // nothing pressed or moved: the cost of polling recordMapping every frame while waiting for input
+        recordCount++;
+        VirtualController controller = controllers[recordCount % controllerCount];
+        return mappings.recordMapping(controller, BenchmarkMappings.AXIS_AIM);
+    }
+}
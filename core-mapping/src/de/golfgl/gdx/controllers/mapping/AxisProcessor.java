@@ -0,0 +1,192 @@
+package de.golfgl.gdx.controllers.mapping;
+
+/**
+ * Processing applied to the values of a configured axis: inner and outer deadzone, response curve, smoothing,
+ * inversion and scaling. Set it on {@link ConfiguredInput#axisProcessor} before
+ * {@link ControllerMappings#commitConfig()} is called:
+ * <pre>
+ * ConfiguredInput horizontal = new ConfiguredInput(ConfiguredInput.Type.axis, AXIS_HORIZONTAL);
+ * horizontal.axisProcessor = new AxisProcessor().setDeadzone(.15f, .05f).setExponential(2);
+ * </pre>
+ * Deadzone and curve are combined in a lookup table when the processor is configured, so processing a value is an
+ * interpolated table access. {@link MappedController}, {@link MappedControllerGroup} and
+ * {@link MappedControllerAdapter} all apply the same processor, so polled values and events are consistent.
+ * <p>
+ * Smoothing needs the last value, which is held by the caller. Values of 0 and &plusmn;1 are never smoothed, so
+ * releasing a stick is reported immediately in event based input as well.
+ */
+public class AxisProcessor {
+    /**
+     * number of entries of the lookup table
+     */
+    public static final int TABLE_SIZE = 257;
+
+    private final float[] table = new float[TABLE_SIZE];
+    private float innerDeadzone;
+    private float outerDeadzone;
+    private float exponent = 1;
+    private float[] curvePoints;
+    private float smoothing;
+    private float factor = 1;
+    private boolean inverted;
+    private float scale = 1;
+
+    public AxisProcessor() {
+        buildTable();
+    }
+
+    /**
+     * @param innerDeadzone values with an absolute value up to this are 0
+     * @param outerDeadzone values with an absolute value of 1 - outerDeadzone or more are &plusmn;1
+     */
+    public AxisProcessor setDeadzone(float innerDeadzone, float outerDeadzone) {
+        if (innerDeadzone < 0 || outerDeadzone < 0 || innerDeadzone + outerDeadzone >= 1)
+            throw new IllegalArgumentException("Deadzones must be positive and leave a range");
+
+        this.innerDeadzone = innerDeadzone;
+        this.outerDeadzone = outerDeadzone;
+        buildTable();
+        return this;
+    }
+
+    /**
+     * linear response, the default
+     */
+    public AxisProcessor setLinear() {
+        return setExponential(1);
+    }
+
+    /**
+     * @param exponent response is value^exponent. Values above 1 give finer control near the center
+     */
+    public AxisProcessor setExponential(float exponent) {
+        if (exponent <= 0)
+            throw new IllegalArgumentException("exponent must be positive");
+
+        this.exponent = exponent;
+        curvePoints = null;
+        buildTable();
+        return this;
+    }
+
+    /**
+     * @param curvePoints response for evenly spaced values from 0 to 1, linearly interpolated. At least two points
+     */
+    public AxisProcessor setCurve(float[] curvePoints) {
+        if (curvePoints.length < 2)
+            throw new IllegalArgumentException("at least two curve points needed");
+
+        this.curvePoints = curvePoints.clone();
+        exponent = 1;
+        buildTable();
+        return this;
+    }
+
+    /**
+     * @param smoothing 0 for no smoothing, up to 1 (exclusive) for stronger low-pass filtering. Each new value moves
+     *                  the result by 1 - smoothing towards it
+     */
+    public AxisProcessor setSmoothing(float smoothing) {
+        if (smoothing < 0 || smoothing >= 1)
+            throw new IllegalArgumentException("smoothing must be between 0 and 1");
+
+        this.smoothing = smoothing;
+        return this;
+    }
+
+    public AxisProcessor setInverted(boolean inverted) {
+        this.inverted = inverted;
+        factor = inverted ? -scale : scale;
+        return this;
+    }
+
+    /**
+     * @param scale processed values are multiplied with this
+     */
+    public AxisProcessor setScale(float scale) {
+        this.scale = scale;
+        factor = inverted ? -scale : scale;
+        return this;
+    }
+
+    public float getInnerDeadzone() {
+        return innerDeadzone;
+    }
+
+    public float getOuterDeadzone() {
+        return outerDeadzone;
+    }
+
+    public float getSmoothing() {
+        return smoothing;
+    }
+
+    public boolean isSmoothing() {
+        return smoothing > 0;
+    }
+
+    public boolean isInverted() {
+        return inverted;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    private void buildTable() {
+        float range = 1 - innerDeadzone - outerDeadzone;
+
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            float value = (float) i / (TABLE_SIZE - 1);
+
+            if (value <= innerDeadzone)
+                value = 0;
+            else if (value >= 1 - outerDeadzone)
+                value = 1;
+            else
+                value = (value - innerDeadzone) / range;
+
+            if (curvePoints != null)
+                value = interpolate(curvePoints, value);
+            else if (exponent != 1)
+                value = (float) Math.pow(value, exponent);
+
+            table[i] = value;
+        }
+    }
+
+    private static float interpolate(float[] points, float value) {
+        float position = value * (points.length - 1);
+        int index = Math.min((int) position, points.length - 2);
+        float fraction = position - index;
+        return points[index] + (points[index + 1] - points[index]) * fraction;
+    }
+
+    /**
+     * applies deadzone, curve, inversion and scale
+     *
+     * @param value axis value between -1 and 1
+     */
+    public float process(float value) {
+        float abs = Math.min(Math.abs(value), 1f);
+        float position = abs * (TABLE_SIZE - 1);
+        int index = Math.min((int) position, TABLE_SIZE - 2);
+        float fraction = position - index;
+        float processed = table[index] + (table[index + 1] - table[index]) * fraction;
+
+        return (value < 0 ? -processed : processed) * factor;
+    }
+
+    /**
+     * applies smoothing
+     *
+     * @param lastValue last value returned by this method for the axis
+     * @param value     processed value
+     */
+    public float smooth(float lastValue, float value) {
+        if (smoothing <= 0 || value == 0 || Math.abs(value) >= Math.abs(scale))
+            return value;
+
+        return lastValue + (value - lastValue) * (1 - smoothing);
+    }
+}
@@ -0,0 +1,305 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.utils.IntIntMap;
+
+/**
+ * Flat, read-only representation of the mappings of a single controller.
+ * <p>
+ * It is produced by {@link ControllerMappings} whenever the mappings for a controller change and is never modified
+ * afterwards. Every configured input is compacted to a dense slot on {@link ControllerMappings#commitConfig()}, so
+ * all lookups are plain array accesses. {@link MappedController} and {@link MappedControllerAdapter} use this
+ * instead of walking the mapping objects on every poll or event.
+ */
+public final class CompiledMapping {
+    public static final byte TYPE_BUTTON = 0;
+    public static final byte TYPE_AXIS = 1;
+    public static final byte TYPE_AXIS_ANALOG = 2;
+    public static final byte TYPE_AXIS_DIGITAL = 3;
+
+    private final String controllerName;
+
+    // configured id to slot, shared between all compiled mappings of a ControllerMappings instance
+    private final int[] slotByConfiguredId;
+    private final IntIntMap slotByConfiguredIdSparse;
+
+    // slot to configured input
+    final int[] configuredIds;
+    final byte[] types;
+    // null if no configured input has an axis processor
+    private final AxisProcessor[] axisProcessors;
+    final int[] buttonIndexes;
+    final int[] reverseButtonIndexes;
+    final int[] axisIndexes;
+
+    // physical index to slot
+    final int[] slotByButton;
+    final boolean[] reverseByButton;
+    final int[] slotByAxis;
+    final boolean[] invertedByAxis;
+
+    // calibration of the controller, NaN and null if not calibrated
+    private float analogToDigitalTreshold = Float.NaN;
+    private float[] axisRestingOffsets;
+
+    CompiledMapping(String controllerName, int[] slotByConfiguredId, IntIntMap slotByConfiguredIdSparse,
+                    int[] configuredIds, byte[] types, AxisProcessor[] axisProcessors, int buttonCount,
+                    int axisCount) {
+        this.controllerName = controllerName;
+        this.slotByConfiguredId = slotByConfiguredId;
+        this.slotByConfiguredIdSparse = slotByConfiguredIdSparse;
+        this.configuredIds = configuredIds;
+        this.types = types;
+        this.axisProcessors = axisProcessors;
+
+        int slotCount = configuredIds.length;
+        buttonIndexes = newFilledArray(slotCount);
+        reverseButtonIndexes = newFilledArray(slotCount);
+        axisIndexes = newFilledArray(slotCount);
+        slotByButton = newFilledArray(buttonCount);
+        reverseByButton = new boolean[buttonCount];
+        slotByAxis = newFilledArray(axisCount);
+        invertedByAxis = new boolean[axisCount];
+    }
+
+    private static int[] newFilledArray(int size) {
+        int[] array = new int[size];
+        for (int i = 0; i < size; i++)
+            array[i] = -1;
+        return array;
+    }
+
+    static byte toTypeByte(ConfiguredInput.Type type) {
+        switch (type) {
+            case button:
+                return TYPE_BUTTON;
+            case axisAnalog:
+                return TYPE_AXIS_ANALOG;
+            case axisDigital:
+                return TYPE_AXIS_DIGITAL;
+            default:
+                return TYPE_AXIS;
+        }
+    }
+
+    void putButton(int slot, int buttonIndex, int reverseButtonIndex) {
+        buttonIndexes[slot] = buttonIndex;
+        slotByButton[buttonIndex] = slot;
+
+        if (reverseButtonIndex >= 0) {
+            reverseButtonIndexes[slot] = reverseButtonIndex;
+            slotByButton[reverseButtonIndex] = slot;
+            reverseByButton[reverseButtonIndex] = true;
+        }
+    }
+
+    void putAxis(int slot, int axisIndex, boolean inverted) {
+        axisIndexes[slot] = axisIndex;
+        slotByAxis[axisIndex] = slot;
+        invertedByAxis[axisIndex] = inverted;
+    }
+
+    void setCalibration(float analogToDigitalTreshold, float[] axisRestingOffsets) {
+        this.analogToDigitalTreshold = analogToDigitalTreshold;
+        this.axisRestingOffsets = axisRestingOffsets;
+    }
+
+    public String getControllerName() {
+        return controllerName;
+    }
+
+    /**
+     * @return number of slots, equal to the number of configured inputs
+     */
+    public int getSlotCount() {
+        return configuredIds.length;
+    }
+
+    /**
+     * @param configuredId configured input id
+     * @return the slot for the configured input, or -1 if it is not configured
+     */
+    public int getSlot(int configuredId) {
+        return lookupSlot(slotByConfiguredId, slotByConfiguredIdSparse, configuredId);
+    }
+
+    static int lookupSlot(int[] slotByConfiguredId, IntIntMap slotByConfiguredIdSparse, int configuredId) {
+        if (slotByConfiguredId != null)
+            return configuredId >= 0 && configuredId < slotByConfiguredId.length ? slotByConfiguredId[configuredId] : -1;
+        else
+            return slotByConfiguredIdSparse.get(configuredId, -1);
+    }
+
+    public int getConfiguredId(int slot) {
+        return configuredIds[slot];
+    }
+
+    /**
+     * @return the processor for the axis in the given slot, or null
+     */
+    public AxisProcessor getAxisProcessor(int slot) {
+        return axisProcessors != null ? axisProcessors[slot] : null;
+    }
+
+    /**
+     * @return one of the TYPE_ constants
+     */
+    public byte getType(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * @return true if the configured input in the given slot is mapped on this controller
+     */
+    public boolean isMapped(int slot) {
+        return buttonIndexes[slot] >= 0 || axisIndexes[slot] >= 0;
+    }
+
+    /**
+     * @return the slot mapped to the physical button (or reverse button), or -1
+     */
+    public int getSlotForButton(int buttonIndex) {
+        return buttonIndex >= 0 && buttonIndex < slotByButton.length ? slotByButton[buttonIndex] : -1;
+    }
+
+    /**
+     * @return true if the physical button is the reverse button of an axis mapping
+     */
+    public boolean isReverseButton(int buttonIndex) {
+        return buttonIndex >= 0 && buttonIndex < reverseByButton.length && reverseByButton[buttonIndex];
+    }
+
+    /**
+     * @return the slot mapped to the physical axis, or -1
+     */
+    public int getSlotForAxis(int axisIndex) {
+        return axisIndex >= 0 && axisIndex < slotByAxis.length ? slotByAxis[axisIndex] : -1;
+    }
+
+    public int getButtonIndex(int slot) {
+        return buttonIndexes[slot];
+    }
+
+    public int getReverseButtonIndex(int slot) {
+        return reverseButtonIndexes[slot];
+    }
+
+    public int getAxisIndex(int slot) {
+        return axisIndexes[slot];
+    }
+
+    /**
+     * @param defaultTreshold treshold to use if the controller is not calibrated
+     * @return the treshold for digital axis mapped to an analog axis for this controller
+     */
+    public float getAnalogToDigitalTreshold(float defaultTreshold) {
+        return Float.isNaN(analogToDigitalTreshold) ? defaultTreshold : analogToDigitalTreshold;
+    }
+
+    /**
+     * @return true if the values of the axis are negated, like SDL's inverted axis bindings
+     */
+    public boolean isAxisInverted(int axisIndex) {
+        return axisIndex >= 0 && axisIndex < invertedByAxis.length && invertedByAxis[axisIndex];
+    }
+
+    /**
+     * @return the axis value with the calibrated resting offset of the axis removed, negated if the axis is mapped
+     * inverted
+     */
+    public float calibrateAxisValue(int axisIndex, float value) {
+        if (axisRestingOffsets != null && axisIndex >= 0 && axisIndex < axisRestingOffsets.length)
+            value = Math.max(-1f, Math.min(1f, value - axisRestingOffsets[axisIndex]));
+
+        return isAxisInverted(axisIndex) ? -value : value;
+    }
+
+    /**
+     * reads the state of a mapped button from the controller
+     *
+     * @return true if the button is pressed. false if not pressed, not mapped or not mapped to a button
+     */
+    public boolean isButtonPressed(Controller controller, int slot) {
+        int buttonIndex = buttonIndexes[slot];
+        return buttonIndex >= 0 && controller.getButton(buttonIndex);
+    }
+
+    /**
+     * digital value of an analog axis value with hysteresis: -1 or 1 when the enter treshold is reached, 0 below the
+     * exit treshold and the last value in between
+     *
+     * @param lastValue last digital value
+     */
+    public static float toDigital(float value, float lastValue, float exitTreshold, float enterTreshold) {
+        float abs = Math.abs(value);
+
+        if (abs >= Math.max(enterTreshold, exitTreshold))
+            return Math.signum(value);
+        else if (abs < exitTreshold || lastValue * value <= 0)
+            return 0;
+        else
+            return lastValue;
+    }
+
+    /**
+     * reads the current value of a mapped axis from the controller, without hysteresis for digital axis
+     *
+     * @param analogToDigitalTreshold treshold for digital axis mapped to an analog axis, if the controller is not
+     *                                calibrated
+     * @return current value, 0 if not mapped. The {@link AxisProcessor} of the slot is applied, except for smoothing
+     */
+    public float getAxisValue(Controller controller, int slot, float analogToDigitalTreshold) {
+        return getAxisValue(controller, slot, analogToDigitalTreshold, analogToDigitalTreshold, 0);
+    }
+
+    /**
+     * reads the current value of a mapped axis from the controller
+     *
+     * @param analogToDigitalTreshold      treshold to switch a digital axis mapped to an analog axis back to 0, if
+     *                                     the controller is not calibrated
+     * @param analogToDigitalEnterTreshold treshold to switch a digital axis mapped to an analog axis to -1 or 1
+     * @param lastValue                    last value returned for the slot, for the hysteresis of digital axis
+     * @return current value, 0 if not mapped. The {@link AxisProcessor} of the slot is applied, except for smoothing
+     */
+    public float getAxisValue(Controller controller, int slot, float analogToDigitalTreshold,
+                              float analogToDigitalEnterTreshold, float lastValue) {
+        float value = readAxisValue(controller, slot, analogToDigitalTreshold, analogToDigitalEnterTreshold,
+                lastValue);
+
+        AxisProcessor axisProcessor = (axisProcessors != null ? axisProcessors[slot] : null);
+        if (axisProcessor != null && types[slot] != TYPE_AXIS_DIGITAL)
+            value = axisProcessor.process(value);
+
+        return value;
+    }
+
+    private float readAxisValue(Controller controller, int slot, float analogToDigitalTreshold,
+                                float analogToDigitalEnterTreshold, float lastValue) {
+        byte type = types[slot];
+
+        // first check if a real axis is mapped
+        int axisIndex = axisIndexes[slot];
+        if (axisIndex >= 0) {
+            float value = calibrateAxisValue(axisIndex, controller.getAxis(axisIndex));
+            if (type == TYPE_AXIS_DIGITAL)
+                return toDigital(value, lastValue, getAnalogToDigitalTreshold(analogToDigitalTreshold),
+                        analogToDigitalEnterTreshold);
+            else
+                return value;
+        }
+
+        // axisAnalog only accepts real axis, so if not found don't look any further
+        if (type == TYPE_AXIS_ANALOG)
+            return 0;
+
+        // if not a real axis, it could be a set of buttons
+        int buttonIndex = buttonIndexes[slot];
+        if (buttonIndex >= 0 && controller.getButton(buttonIndex))
+            return 1f;
+        int reverseButtonIndex = reverseButtonIndexes[slot];
+        if (reverseButtonIndex >= 0 && controller.getButton(reverseButtonIndex))
+            return -1f;
+
+        return 0;
+    }
+}
@@ -0,0 +1,150 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded ring buffer for configured input events, used by {@link MappedControllerAdapter} in queued mode.
+ * <p>
+ * Events are written to preallocated primitive slots, so no garbage is produced per event. The queue is safe for
+ * one producing thread (the thread delivering controller events) and one consuming thread (the game thread calling
+ * {@link #drain(EventHandler)}) without locks. If the queue is full, new events are dropped and counted.
+ * <p>
+ * Every event carries everything needed to report it, so the consumer does not need to look at state of the
+ * producer. The controller reference is cleared when the event was handled.
+ */
+public class ConfiguredEventQueue {
+    public static final byte EVENT_BUTTON_DOWN = 0;
+    public static final byte EVENT_BUTTON_UP = 1;
+    public static final byte EVENT_AXIS_MOVED = 2;
+
+    private final int mask;
+    private final byte[] types;
+    private final Controller[] controllers;
+    private final int[] players;
+    private final int[] configuredIds;
+    private final float[] values;
+    private final long[] timestamps;
+
+    // next index to write, only changed by producer
+    private final AtomicLong tail = new AtomicLong();
+    // next index to read, only changed by consumer
+    private final AtomicLong head = new AtomicLong();
+    private volatile long droppedCount;
+
+    /**
+     * @param capacity maximum number of events held, rounded up to a power of two
+     */
+    public ConfiguredEventQueue(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size = size << 1;
+
+        mask = size - 1;
+        types = new byte[size];
+        controllers = new Controller[size];
+        players = new int[size];
+        configuredIds = new int[size];
+        values = new float[size];
+        timestamps = new long[size];
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return number of events currently waiting in the queue
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * @return number of events dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * adds an event. Must only be called from the producing thread.
+     *
+     * @param type       one of the EVENT_ constants
+     * @param controller the controller giving the event
+     * @param player     player slot of the controller when the event was given, or -1
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(byte type, Controller controller, int player, int configuredId, float value,
+                         long timestamp) {
+        long currentTail = tail.get();
+        if (currentTail - head.get() > mask) {
+            droppedCount++;
+            return false;
+        }
+
+        int index = (int) currentTail & mask;
+        types[index] = type;
+        controllers[index] = controller;
+        players[index] = player;
+        configuredIds[index] = configuredId;
+        values[index] = value;
+        timestamps[index] = timestamp;
+
+        // publish the event to the consumer
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * hands all waiting events to the given handler. Must only be called from the consuming thread.
+     *
+     * @return number of events handled
+     */
+    public int drain(EventHandler handler) {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        int count = 0;
+
+        while (currentHead < currentTail) {
+            int index = (int) currentHead & mask;
+            Controller controller = controllers[index];
+            // don't hold the controller after the event was handled
+            controllers[index] = null;
+            handler.handleEvent(types[index], controller, players[index], configuredIds[index], values[index],
+                    timestamps[index]);
+            currentHead++;
+            count++;
+            // free the slot for the producer
+            head.lazySet(currentHead);
+        }
+
+        return count;
+    }
+
+    /**
+     * removes all waiting events. Must only be called from the consuming thread.
+     */
+    public void clear() {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        for (long i = currentHead; i < currentTail; i++)
+            controllers[(int) i & mask] = null;
+        head.lazySet(currentTail);
+    }
+
+    public interface EventHandler {
+        /**
+         * @param type       one of the EVENT_ constants
+         * @param controller the controller that gave the event, it might have disconnected in the meantime
+         * @param player     player slot of the controller when the event was given, or -1
+         * @param timestamp  nano time the event was received
+         */
+        void handleEvent(byte type, Controller controller, int player, int configuredId, float value,
+                         long timestamp);
+    }
+}
@@ -7,6 +7,10 @@ public class ConfiguredInput {
     // configured by game
     public int inputId;
     public Type inputType;
+    /**
+     * processing for axis values, or null. Must be set before {@link ControllerMappings#commitConfig()} is called
+     */
+    public AxisProcessor axisProcessor;
 
     public ConfiguredInput(Type type, int inputId) {
         this.inputId = inputId;
@@ -32,7 +36,10 @@ public class ConfiguredInput {
         /**
          * a digital axis is an axis that gives you values -1, 0 or +1. Mapping can use
          * an analog axis, dpad or normal buttons for this. If an analog axis is used, a treshold value of default
-         * 0.5 is 0 and of &gt; 0.8 is 1. Between old value is used.
+         * 0.5 is 0 and above is 1. With an enter treshold of e.g. 0.8, it switches to 1 at 0.8 and the old value
+         * is used in between. See
+         * {@link ControllerMappings#analogToDigitalTreshold} and
+         * {@link ControllerMappings#analogToDigitalEnterTreshold}
          */
         axisDigital
     }
@@ -0,0 +1,257 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.utils.IntSet;
+
+/**
+ * Samples all buttons and axis of a controller over a short time while it is not touched, to find broken inputs,
+ * axis resting offsets and noise. This is a more robust replacement for
+ * {@link ControllerMappings#recordButtonsToIgnoreForMapping(Controller)}:
+ * <pre>
+ * calibration.begin(controller);
+ * ...
+ * // in render()
+ * if (calibration.isRunning() &amp;&amp; calibration.update(delta))
+ *     calibration.apply();
+ * </pre>
+ * {@link #apply()} sets the inputs to ignore when recording and saves tresholds and resting offsets with the
+ * controller's mapping, see {@link ControllerMappings#setCalibration(Controller, float, float, float[])}.
+ * <p>
+ * Statistics are kept in primitive arrays that are only reallocated if a controller with more inputs is calibrated,
+ * so sampling produces no garbage.
+ */
+public class ControllerCalibration {
+    /**
+     * highest treshold calibration will set
+     */
+    public static final float MAX_TRESHOLD = .9f;
+
+    private final ControllerMappings mappings;
+    /**
+     * time in seconds to sample the controller
+     */
+    public float duration = .5f;
+    /**
+     * buttons reported pressed in at least this part of the samples are ignored
+     */
+    public float stuckButtonRatio = .5f;
+    /**
+     * multiplied with the standard deviation of an axis to estimate its noise
+     */
+    public float noiseFactor = 3f;
+
+    private Controller controller;
+    private float timeLeft;
+    private boolean running;
+    private boolean finished;
+    private int sampleCount;
+
+    private int minButtonIndex;
+    private int buttonCount;
+    private int[] buttonPressedCounts = new int[0];
+
+    private int axisCount;
+    // running mean and sum of squared differences (Welford)
+    private double[] axisMeans = new double[0];
+    private double[] axisM2 = new double[0];
+    private float[] axisMins = new float[0];
+    private float[] axisMaxs = new float[0];
+
+    public ControllerCalibration(ControllerMappings mappings) {
+        this.mappings = mappings;
+    }
+
+    /**
+     * starts sampling the controller. It should not be touched until sampling is finished.
+     */
+    public void begin(Controller controller) {
+        this.controller = controller;
+        timeLeft = duration;
+        running = true;
+        finished = false;
+        sampleCount = 0;
+
+        minButtonIndex = controller.getMinButtonIndex();
+        buttonCount = Math.max(0, controller.getMaxButtonIndex() - minButtonIndex + 1);
+        if (buttonPressedCounts.length < buttonCount)
+            buttonPressedCounts = new int[buttonCount];
+        for (int i = 0; i < buttonCount; i++)
+            buttonPressedCounts[i] = 0;
+
+        axisCount = Math.max(0, controller.getAxisCount());
+        if (axisMeans.length < axisCount) {
+            axisMeans = new double[axisCount];
+            axisM2 = new double[axisCount];
+            axisMins = new float[axisCount];
+            axisMaxs = new float[axisCount];
+        }
+        for (int i = 0; i < axisCount; i++) {
+            axisMeans[i] = 0;
+            axisM2[i] = 0;
+            axisMins[i] = Float.MAX_VALUE;
+            axisMaxs[i] = -Float.MAX_VALUE;
+        }
+    }
+
+    /**
+     * takes a sample and counts down the sampling time. Call it every frame while running.
+     *
+     * @param delta time in seconds
+     * @return true if sampling is finished
+     */
+    public boolean update(float delta) {
+        if (!running)
+            return finished;
+
+        sample();
+        timeLeft -= delta;
+        if (timeLeft <= 0) {
+            running = false;
+            finished = true;
+        }
+
+        return finished;
+    }
+
+    /**
+     * reads all buttons and axis of the controller once
+     */
+    public void sample() {
+        if (controller == null)
+            return;
+
+        sampleCount++;
+
+        for (int i = 0; i < buttonCount; i++)
+            if (controller.getButton(minButtonIndex + i))
+                buttonPressedCounts[i]++;
+
+        for (int i = 0; i < axisCount; i++) {
+            float value = controller.getAxis(i);
+            double delta = value - axisMeans[i];
+            axisMeans[i] += delta / sampleCount;
+            axisM2[i] += delta * (value - axisMeans[i]);
+            axisMins[i] = Math.min(axisMins[i], value);
+            axisMaxs[i] = Math.max(axisMaxs[i], value);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public Controller getController() {
+        return controller;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getAxisCount() {
+        return axisCount;
+    }
+
+    public float getAxisMean(int axisIndex) {
+        return (float) axisMeans[axisIndex];
+    }
+
+    public float getAxisVariance(int axisIndex) {
+        return sampleCount > 1 ? (float) (axisM2[axisIndex] / (sampleCount - 1)) : 0;
+    }
+
+    public float getAxisMin(int axisIndex) {
+        return axisMins[axisIndex];
+    }
+
+    public float getAxisMax(int axisIndex) {
+        return axisMaxs[axisIndex];
+    }
+
+    /**
+     * @return true if the button was reported pressed while the controller was not touched
+     */
+    public boolean isButtonIgnored(int buttonIndex) {
+        int i = buttonIndex - minButtonIndex;
+        return i >= 0 && i < buttonCount && sampleCount > 0
+                && buttonPressedCounts[i] >= stuckButtonRatio * sampleCount;
+    }
+
+    /**
+     * @return true if the axis reported a high value while the controller was not touched
+     */
+    public boolean isAxisIgnored(int axisIndex) {
+        return sampleCount > 0 && Math.abs(axisMeans[axisIndex]) >= mappings.analogToDigitalTreshold;
+    }
+
+    /**
+     * @return value the axis reports when not touched, 0 for ignored axis
+     */
+    public float getRestingOffset(int axisIndex) {
+        return isAxisIgnored(axisIndex) ? 0 : (float) axisMeans[axisIndex];
+    }
+
+    /**
+     * @return how far the axis moved from its resting value while not touched
+     */
+    public float getAxisNoise(int axisIndex) {
+        if (sampleCount == 0)
+            return 0;
+
+        float mean = (float) axisMeans[axisIndex];
+        float noise = Math.max(axisMaxs[axisIndex] - mean, mean - axisMins[axisIndex]);
+        return Math.max(noise, noiseFactor * (float) Math.sqrt(getAxisVariance(axisIndex)));
+    }
+
+    /**
+     * @return treshold for the controller: the global treshold, raised if axis are noisy
+     */
+    public float getAnalogToDigitalTreshold() {
+        float maxNoise = 0;
+        for (int i = 0; i < axisCount; i++)
+            if (!isAxisIgnored(i))
+                maxNoise = Math.max(maxNoise, getAxisNoise(i));
+
+        return Math.min(MAX_TRESHOLD, Math.max(mappings.analogToDigitalTreshold, 2 * maxNoise));
+    }
+
+    /**
+     * @return maximum accepted value for the controller: the global value, raised by resting offsets
+     */
+    public float getMaxAcceptedAnalogValue() {
+        float maxOffset = 0;
+        for (int i = 0; i < axisCount; i++)
+            maxOffset = Math.max(maxOffset, Math.abs(getRestingOffset(i)));
+
+        return mappings.maxAcceptedAnalogValue + maxOffset;
+    }
+
+    /**
+     * sets ignored inputs for recording and saves the calibration values with the controller's mapping
+     */
+    public void apply() {
+        if (!finished)
+            throw new IllegalStateException("Calibration is not finished");
+
+        IntSet buttonsToIgnore = new IntSet();
+        for (int i = 0; i < buttonCount; i++)
+            if (isButtonIgnored(minButtonIndex + i))
+                buttonsToIgnore.add(minButtonIndex + i);
+
+        IntSet axisToIgnore = new IntSet();
+        float[] restingOffsets = new float[axisCount];
+        for (int i = 0; i < axisCount; i++) {
+            if (isAxisIgnored(i))
+                axisToIgnore.add(i);
+            restingOffsets[i] = getRestingOffset(i);
+        }
+
+        mappings.setInputsToIgnoreForMapping(buttonsToIgnore, axisToIgnore);
+        mappings.setCalibration(controller, getAnalogToDigitalTreshold(), getMaxAcceptedAnalogValue(),
+                restingOffsets);
+    }
+}
@@ -1,47 +1,126 @@
 package de.golfgl.gdx.controllers.mapping;
 
 import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
-
+import com.badlogic.gdx.utils.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by Benjamin Schulte on 04.11.2017.
+ * <p>
+ * Mappings can be read from other threads while they are recorded, loaded or reset: changes are done under the lock
+ * of this object and published as a new map of {@link MappedInputs} and new {@link CompiledMapping} instances, which
+ * are never changed afterwards. {@link #getControllerMapping(Controller)} and
+ * {@link MappedInputs#getCompiledMapping()} therefore don't lock once a controller's mapping is there.
+ * <p>
+ * For applications seeing many different controller models, the number of mappings held can be limited with
+ * {@link #setMaxCachedMappings(int)}.
  */
 
 public class ControllerMappings {
     public static final String LOG_TAG = "CONTROLLERMAPPING";
+    // passed as axis index to recordMapping when the controller should be checked for a moved axis
+    private static final int SCAN_AXIS = -2;
     public float analogToDigitalTreshold = .5f;
+    /**
+     * an analog axis mapped to a digital axis switches to -1 or 1 at this value, and back to 0 below
+     * {@link #analogToDigitalTreshold}. Between the two, the old value is kept. Default is 0: no hysteresis, the
+     * value switches at {@link #analogToDigitalTreshold} in both directions.
+     * <p>
+     * This is the only setting for the hysteresis: {@link MappedController}, {@link MappedControllerGroup} and
+     * {@link MappedControllerAdapter} use it for digital axis, {@link ControllerToInputAdapter} for its axis keys. They
+     * take the value when they are created.
+     */
+    public float analogToDigitalEnterTreshold;
     /**
      * some Gamepads report analog axis from .997 to 1.03...
      */
     public float maxAcceptedAnalogValue = 1.1f;
+    /**
+     * if set, mappings loaded with fillFromJson are only kept in raw form and turned into {@link MappedInputs} when
+     * a controller with this name is used. Useful for big mapping files of which only a few entries are needed.
+     */
+    public boolean lazyLoading;
     /**
      * this holds all inputs defined by the game
      */
-    private HashMap<Integer, ConfiguredInput> configuredInputs;
+    private IntMap<ConfiguredInput> configuredInputs;
     /**
-     * this holds defined input mappings for every Controller (String is its name)
+     * configured inputs compacted to dense slots, built on {@link #commitConfig()}
      */
-    private HashMap<String, MappedInputs> mappedInputs;
-    private boolean initialized;
+    private int[] configuredIdBySlot;
+    private byte[] typeBySlot;
+    private AxisProcessor[] axisProcessorBySlot;
+    private int[] slotByConfiguredId;
+    private IntIntMap slotByConfiguredIdSparse;
+    /**
+     * this holds defined input mappings for every Controller (String is its name). A published map is never changed,
+     * writers replace it with a changed copy
+     */
+    private volatile HashMap<String, MappedInputs> mappedInputs = new HashMap<>();
+    // copy of mappedInputs changed by the running write operation, published by publishChanges()
+    private HashMap<String, MappedInputs> changedMappedInputs;
+    // set by the running write operation if mappingGeneration must be incremented when publishing
+    private boolean mappingsChanged;
+    /**
+     * names of controllers without recorded, loaded or default mapping, so misses don't take the lock every time.
+     * Copied on write like {@link #mappedInputs}, and cleared when the mappings change
+     */
+    private volatile HashSet<String> unmappedNames = new HashSet<>();
+    /**
+     * loaded mappings not yet turned into {@link MappedInputs} when {@link #lazyLoading} is set. Four ints per
+     * mapping: configured id, axis, button, reverse button
+     */
+    private HashMap<String, int[]> pendingMappings;
+    private HashMap<String, float[]> pendingCalibrations;
+    private SdlMappingDatabase mappingDatabase;
+    private volatile boolean initialized;
+    /**
+     * incremented on every change of mappings, so listeners can cache lookups
+     */
+    private volatile int mappingGeneration;
     private int waitingForReverseButtonAxisId = -1;
     private int waitingForReverseButtonFirstIdx = -1;
     private IntSet buttonsToIgnoreForRecord;
     private IntSet axisToIgnoreForRecord;
+    /**
+     * maximum number of {@link MappedInputs} held, 0 for no limit
+     */
+    private int maxCachedMappings;
+    // increased on every use of a mapping, for finding the least recently used one
+    private final AtomicLong useClock = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private long cacheEvictions;
 
     private int findHighAxisValue(Controller controller) {
         // Cycle through axis indexes to check if there is a high value
         float highestValue = 0;
         int axisWithHighestValue = -1;
 
+        float[] calibration = getCalibration(controller);
         final int maxAxisIndex = controller.getAxisCount() - 1;
         for (int i = 0; i <= maxAxisIndex; i++) {
-            float abs = Math.abs(controller.getAxis(i));
-            if (abs > highestValue && abs >= analogToDigitalTreshold && abs <= maxAcceptedAnalogValue
-              && (axisToIgnoreForRecord == null || !axisToIgnoreForRecord.contains(i))) {
-                highestValue = abs;
+            float value = calibrateAxisValue(calibration, i, controller.getAxis(i));
+            if (Math.abs(value) > highestValue && isAxisValueRecordable(calibration, i, value)) {
+                highestValue = Math.abs(value);
                 axisWithHighestValue = i;
             }
         }
@@ -49,6 +128,186 @@ public class ControllerMappings {
         return axisWithHighestValue;
     }
 
+    /**
+     * @return true if the axis value is high enough to record the axis, and the axis is not ignored
+     */
+    synchronized boolean isAxisValueRecordable(Controller controller, int axisIndex, float value) {
+        float[] calibration = getCalibration(controller);
+        return isAxisValueRecordable(calibration, axisIndex, calibrateAxisValue(calibration, axisIndex, value));
+    }
+
+    private boolean isAxisValueRecordable(float[] calibration, int axisIndex, float calibratedValue) {
+        float abs = Math.abs(calibratedValue);
+        float treshold = (calibration != null ? calibration[0] : analogToDigitalTreshold);
+        float maxValue = (calibration != null ? calibration[1] : maxAcceptedAnalogValue);
+        return abs >= treshold && abs <= maxValue
+                && (axisToIgnoreForRecord == null || !axisToIgnoreForRecord.contains(axisIndex));
+    }
+
+    private static float calibrateAxisValue(float[] calibration, int axisIndex, float value) {
+        if (calibration != null && axisIndex >= 0 && axisIndex + 2 < calibration.length)
+            return value - calibration[axisIndex + 2];
+        else
+            return value;
+    }
+
+    /**
+     * @return calibration of the controller, see {@link MappedInputs#calibration}, or null
+     */
+    private float[] getCalibration(Controller controller) {
+        MappedInputs mapping = currentMappedInputs().get(controller.getName());
+        if (mapping != null)
+            return mapping.calibration;
+
+        return (pendingCalibrations != null ? pendingCalibrations.get(controller.getName()) : null);
+    }
+
+    /**
+     * @return true if the button is not ignored for recording
+     */
+    synchronized boolean isButtonRecordable(int buttonIndex) {
+        return buttonsToIgnoreForRecord == null || !buttonsToIgnoreForRecord.contains(buttonIndex);
+    }
+
+    /**
+     * @return the mappings, with the changes of the running write operation
+     */
+    private HashMap<String, MappedInputs> currentMappedInputs() {
+        return (changedMappedInputs != null ? changedMappedInputs : mappedInputs);
+    }
+
+    /**
+     * @return a copy of the mappings to change, published when {@link #publishChanges()} is called. Only call
+     * this while holding the lock
+     */
+    private HashMap<String, MappedInputs> changeMappedInputs() {
+        if (changedMappedInputs == null)
+            changedMappedInputs = new HashMap<>(mappedInputs);
+        mappingsChanged = true;
+        return changedMappedInputs;
+    }
+
+    /**
+     * publishes the changes of the running write operation. The generation is incremented last, so readers seeing
+     * the new generation also see the new mappings
+     */
+    private void publishChanges() {
+        if (changedMappedInputs != null) {
+            if (maxCachedMappings > 0)
+                evictMappings(changedMappedInputs);
+            mappedInputs = changedMappedInputs;
+            changedMappedInputs = null;
+        }
+        if (mappingsChanged) {
+            mappingsChanged = false;
+            // a controller without mapping might have one now
+            if (!unmappedNames.isEmpty())
+                unmappedNames = new HashSet<>();
+            mappingGeneration++;
+        }
+    }
+
+    /**
+     * removes the least recently looked up mappings until the limit is reached. Mappings in use by any connected
+     * controller are kept, even if it holds the mapping and does not look it up again. Recorded mappings are turned back into raw pending mappings, so they are still saved and are
+     * recreated on next use. Evicting doesn't change the mapping generation, because a recreated mapping is the same.
+     */
+    private void evictMappings(HashMap<String, MappedInputs> mappings) {
+        int excess = mappings.size() - maxCachedMappings;
+        if (excess <= 0)
+            return;
+
+        // lastUsed changes concurrently, so the candidates are ranked by a snapshot of it
+        MappedInputs[] candidates = new MappedInputs[mappings.size()];
+        long[] lastUsed = new long[candidates.length];
+        int candidateCount = 0;
+        for (MappedInputs mapping : mappings.values())
+            if (!mapping.isInUse()) {
+                candidates[candidateCount] = mapping;
+                lastUsed[candidateCount] = mapping.lastUsed;
+                candidateCount++;
+            }
+
+        if (candidateCount == 0)
+            return;
+
+        // every candidate used at or before this time is evicted, until the limit is reached
+        long[] sortedLastUsed = Arrays.copyOf(lastUsed, candidateCount);
+        Arrays.sort(sortedLastUsed);
+        long evictUpTo = sortedLastUsed[Math.min(excess, candidateCount) - 1];
+
+        for (int i = 0; i < candidateCount && excess > 0; i++) {
+            if (lastUsed[i] > evictUpTo)
+                continue;
+
+            MappedInputs evicted = candidates[i];
+            mappings.remove(evicted.controllerName);
+            cacheEvictions++;
+            excess--;
+
+            if (evicted.isRecorded) {
+                if (pendingMappings == null) {
+                    pendingMappings = new HashMap<>();
+                    pendingCalibrations = new HashMap<>();
+                }
+                pendingMappings.put(evicted.controllerName, evicted.toRawMappings());
+                if (evicted.calibration != null)
+                    pendingCalibrations.put(evicted.controllerName, evicted.calibration);
+            }
+        }
+    }
+
+    public int getMaxCachedMappings() {
+        return maxCachedMappings;
+    }
+
+    /**
+     * Limits the number of controller mappings held. When exceeded, the least recently used mappings of controllers
+     * not connected are evicted: default mappings are created again on next use, recorded or loaded mappings are
+     * kept in a compact raw form until then and are still saved by {@link #toJson()}. {@link MappedController}
+     * instances keep the mapping they hold, see {@link MappedController#refreshMappingCache()}.
+     *
+     * @param maxCachedMappings maximum number of mappings, 0 for no limit. Default is 0
+     */
+    public synchronized void setMaxCachedMappings(int maxCachedMappings) {
+        this.maxCachedMappings = maxCachedMappings;
+
+        if (maxCachedMappings > 0 && mappedInputs.size() > maxCachedMappings) {
+            changedMappedInputs = new HashMap<>(mappedInputs);
+            publishChanges();
+        }
+    }
+
+    /**
+     * @return number of controller mappings held at the moment
+     */
+    public int getCachedMappingCount() {
+        return mappedInputs.size();
+    }
+
+    /**
+     * @return number of times {@link #getControllerMapping(Controller)} found the mapping, or found that the
+     * controller has none
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return number of times {@link #getControllerMapping(Controller)} had to create the mapping from a loaded,
+     * evicted or default mapping, or to find out that there is none
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * @return number of mappings evicted because of {@link #setMaxCachedMappings(int)}
+     */
+    public synchronized long getCacheEvictions() {
+        return cacheEvictions;
+    }
+
     private int findPressedButton(Controller controller) {
         // Cycle through button indexes to check if a button is pressed
         // Some gamepads report buttons from 90 to 107, so we check up to index 500
@@ -57,7 +316,7 @@ public class ControllerMappings {
         final int minButtonIndex = controller.getMinButtonIndex();
         final int maxButtonIndex = controller.getMaxButtonIndex();
         for (int i = minButtonIndex; i <= maxButtonIndex; i++)
-            if (controller.getButton(i) && (buttonsToIgnoreForRecord == null || !buttonsToIgnoreForRecord.contains(i)))
+            if (controller.getButton(i) && isButtonRecordable(i))
                 return i;
 
         return -1;
@@ -66,92 +325,420 @@ public class ControllerMappings {
     /**
      * @return all mappings as a json value
      */
-    public JsonValue toJson() {
+    public synchronized JsonValue toJson() {
         JsonValue json = new JsonValue(JsonValue.ValueType.array);
-        if (mappedInputs != null)
-            for (MappedInputs controllerMapping : mappedInputs.values())
-                if (controllerMapping.isRecorded) {
-                    JsonValue controllerJson = new JsonValue(JsonValue.ValueType.object);
-                    controllerJson.addChild("name", new JsonValue(controllerMapping.getControllerName()));
-                    controllerJson.addChild("mapping", controllerMapping.toJson());
-                    json.addChild(controllerJson);
+        for (MappedInputs controllerMapping : mappedInputs.values())
+            if (controllerMapping.isRecorded) {
+                JsonValue controllerJson = new JsonValue(JsonValue.ValueType.object);
+                controllerJson.addChild("name", new JsonValue(controllerMapping.getControllerName()));
+                controllerJson.addChild("mapping", controllerMapping.toJson());
+                addCalibrationJson(controllerJson, controllerMapping.calibration);
+                json.addChild(controllerJson);
+            }
+        if (pendingMappings != null)
+            for (Map.Entry<String, int[]> pendingMapping : pendingMappings.entrySet()) {
+                JsonValue controllerJson = new JsonValue(JsonValue.ValueType.object);
+                controllerJson.addChild("name", new JsonValue(pendingMapping.getKey()));
+                JsonValue mappingJson = new JsonValue(JsonValue.ValueType.array);
+                int[] rawMappings = pendingMapping.getValue();
+                for (int i = 0; i + 3 < rawMappings.length; i += 4) {
+                    if (rawMappings[i + 1] < 0 && rawMappings[i + 2] < 0)
+                        continue;
+                    JsonValue jsonmaping = new JsonValue(JsonValue.ValueType.object);
+                    jsonmaping.addChild("confId", new JsonValue(rawMappings[i]));
+                    if (rawMappings[i + 1] >= 0) {
+                        jsonmaping.addChild("axis", new JsonValue(rawMappings[i + 1]));
+                        if (rawMappings[i + 3] == 1)
+                            jsonmaping.addChild("inverted", new JsonValue(true));
+                    } else {
+                        jsonmaping.addChild("button", new JsonValue(rawMappings[i + 2]));
+                        if (rawMappings[i + 3] >= 0)
+                            jsonmaping.addChild("buttonR", new JsonValue(rawMappings[i + 3]));
+                    }
+                    mappingJson.addChild(jsonmaping);
                 }
+                controllerJson.addChild("mapping", mappingJson);
+                addCalibrationJson(controllerJson, pendingCalibrations.get(pendingMapping.getKey()));
+                json.addChild(controllerJson);
+            }
 
         return json;
     }
 
-    public boolean fillFromJson(JsonValue json) {
-        // initialize mapping map and controller information if not already present
-        if (mappedInputs == null)
-            mappedInputs = new HashMap<>();
+    /**
+     * writes all mappings as json to the given writer, without building a {@link JsonValue} tree first. The output
+     * is the same as of {@link #toJson()}.
+     *
+     * @param writer writer to write to, it is flushed but not closed
+     */
+    public synchronized void writeJson(Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.setOutputType(JsonWriter.OutputType.json);
+
+        json.array();
+        for (MappedInputs controllerMapping : mappedInputs.values())
+            if (controllerMapping.isRecorded) {
+                json.object();
+                json.set("name", controllerMapping.getControllerName());
+                json.array("mapping");
+                controllerMapping.writeJson(json);
+                json.pop();
+                writeCalibrationJson(json, controllerMapping.calibration);
+                json.pop();
+            }
+        if (pendingMappings != null)
+            for (Map.Entry<String, int[]> pendingMapping : pendingMappings.entrySet()) {
+                json.object();
+                json.set("name", pendingMapping.getKey());
+                json.array("mapping");
+                int[] rawMappings = pendingMapping.getValue();
+                for (int i = 0; i + 3 < rawMappings.length; i += 4) {
+                    if (rawMappings[i + 1] < 0 && rawMappings[i + 2] < 0)
+                        continue;
+                    json.object();
+                    json.set("confId", rawMappings[i]);
+                    if (rawMappings[i + 1] >= 0) {
+                        json.set("axis", rawMappings[i + 1]);
+                        if (rawMappings[i + 3] == 1)
+                            json.set("inverted", true);
+                    } else {
+                        json.set("button", rawMappings[i + 2]);
+                        if (rawMappings[i + 3] >= 0)
+                            json.set("buttonR", rawMappings[i + 3]);
+                    }
+                    json.pop();
+                }
+                json.pop();
+                writeCalibrationJson(json, pendingCalibrations.get(pendingMapping.getKey()));
+                json.pop();
+            }
+        json.pop();
+        json.flush();
+    }
 
-        for (JsonValue controllerJson = json.child; controllerJson != null; controllerJson = controllerJson.next) {
-            String controllerName = controllerJson.getString("name");
+    /**
+     * calibration is only written if set, so files without calibration stay the same
+     */
+    private static void addCalibrationJson(JsonValue controllerJson, float[] calibration) {
+        if (calibration == null)
+            return;
 
-            if (mappedInputs.containsKey(controllerName))
-                mappedInputs.remove(controllerName);
+        controllerJson.addChild("treshold", new JsonValue(toJsonNumber(calibration[0])));
+        controllerJson.addChild("maxValue", new JsonValue(toJsonNumber(calibration[1])));
+        JsonValue offsetsJson = new JsonValue(JsonValue.ValueType.array);
+        for (int i = 2; i < calibration.length; i++)
+            offsetsJson.addChild(new JsonValue(toJsonNumber(calibration[i])));
+        controllerJson.addChild("offsets", offsetsJson);
+    }
 
-            MappedInputs newMapping = new MappedInputs(controllerName);
-            mappedInputs.put(controllerName, newMapping);
+    private static void writeCalibrationJson(JsonWriter json, float[] calibration) throws IOException {
+        if (calibration == null)
+            return;
 
-            newMapping.isRecorded = true;
+        json.set("treshold", toJsonNumber(calibration[0]));
+        json.set("maxValue", toJsonNumber(calibration[1]));
+        json.array("offsets");
+        for (int i = 2; i < calibration.length; i++)
+            json.value(toJsonNumber(calibration[i]));
+        json.pop();
+    }
 
-            for (JsonValue mappingsJson = controllerJson.get("mapping").child; mappingsJson != null;
-                 mappingsJson = mappingsJson.next) {
+    private static double toJsonNumber(float value) {
+        // prevents float rounding errors like 0.6000000238418579
+        return Double.parseDouble(Float.toString(value));
+    }
 
-                int confId = mappingsJson.getInt("confId");
+    private static float[] readCalibrationJson(JsonValue controllerJson) {
+        JsonValue offsetsJson = controllerJson.get("offsets");
+        if (!controllerJson.has("treshold") || offsetsJson == null)
+            return null;
 
-                if (mappingsJson.has("axis")) {
-                    newMapping.putMapping(new MappedInput(confId, new ControllerAxis(mappingsJson.getInt("axis"))));
-                } else if (mappingsJson.has("buttonR")) {
-                    newMapping.putMapping(new MappedInput(confId, new ControllerButton(mappingsJson.getInt("button")),
-                            new ControllerButton(mappingsJson.getInt("buttonR"))));
-                } else if (mappingsJson.has("button")) {
-                    newMapping.putMapping(new MappedInput(confId, new ControllerButton(mappingsJson.getInt("button"))));
+        float[] calibration = new float[2 + offsetsJson.size];
+        calibration[0] = controllerJson.getFloat("treshold");
+        calibration[1] = controllerJson.getFloat("maxValue");
+        int i = 2;
+        for (JsonValue offsetJson = offsetsJson.child; offsetJson != null; offsetJson = offsetJson.next)
+            calibration[i++] = offsetJson.asFloat();
+
+        return calibration;
+    }
+
+    /**
+     * writes all mappings as UTF-8 encoded json to the given stream, see {@link #writeJson(Writer)}
+     *
+     * @param outputStream stream to write to, it is flushed but not closed
+     */
+    public void writeJson(OutputStream outputStream) throws IOException {
+        writeJson(new OutputStreamWriter(outputStream, "UTF-8"));
+    }
+
+    public synchronized boolean fillFromJson(JsonValue json) {
+        IntArray rawMappings = new IntArray();
+
+        try {
+            for (JsonValue controllerJson = json.child; controllerJson != null;
+                 controllerJson = controllerJson.next) {
+                String controllerName = controllerJson.getString("name");
+                rawMappings.clear();
+
+                for (JsonValue mappingsJson = controllerJson.get("mapping").child; mappingsJson != null;
+                     mappingsJson = mappingsJson.next) {
+                    rawMappings.add(mappingsJson.getInt("confId"));
+                    int axis = mappingsJson.getInt("axis", -1);
+                    rawMappings.add(axis);
+                    rawMappings.add(mappingsJson.getInt("button", -1));
+                    rawMappings.add(axis >= 0 && mappingsJson.getBoolean("inverted", false) ? 1
+                            : mappingsJson.getInt("buttonR", -1));
                 }
+
+                loadControllerMapping(controllerName, rawMappings.items, rawMappings.size,
+                        readCalibrationJson(controllerJson));
             }
+        } finally {
+            // all loaded mappings are published at once
+            publishChanges();
         }
 
         return true;
     }
 
+    /**
+     * reads mappings written by {@link #writeJson(Writer)} or {@link #toJson()} from the given reader, without
+     * building a {@link JsonValue} tree first.
+     *
+     * @param reader reader to read from, is closed afterwards
+     */
+    public synchronized boolean fillFromJson(Reader reader) {
+        try {
+            new MappingsJsonReader().parse(reader);
+        } finally {
+            publishChanges();
+        }
+        return true;
+    }
+
+    /**
+     * adds a recorded controller mapping, replacing an existing one. If {@link #lazyLoading} is set, the raw mapping
+     * is kept until the controller is used.
+     *
+     * @param rawMappings four ints per mapping: configured id, axis, button, reverse button. -1 if not set
+     * @param calibration see {@link MappedInputs#calibration}, or null
+     */
+    private void loadControllerMapping(String controllerName, int[] rawMappings, int rawLength,
+                                       float[] calibration) {
+        if (currentMappedInputs().containsKey(controllerName))
+            changeMappedInputs().remove(controllerName);
+
+        if (lazyLoading) {
+            if (pendingMappings == null) {
+                pendingMappings = new HashMap<>();
+                pendingCalibrations = new HashMap<>();
+            }
+
+            pendingMappings.put(controllerName, Arrays.copyOf(rawMappings, rawLength));
+            if (calibration != null)
+                pendingCalibrations.put(controllerName, calibration);
+            else
+                pendingCalibrations.remove(controllerName);
+            mappingsChanged = true;
+        } else {
+            if (pendingMappings != null) {
+                pendingMappings.remove(controllerName);
+                pendingCalibrations.remove(controllerName);
+            }
+
+            createControllerMapping(controllerName, rawMappings, rawLength, calibration);
+        }
+    }
+
+    private MappedInputs createControllerMapping(String controllerName, int[] rawMappings, int rawLength,
+                                                 float[] calibration) {
+        MappedInputs newMapping = new MappedInputs(controllerName);
+        newMapping.isRecorded = true;
+        newMapping.calibration = calibration;
+        putRawMappings(newMapping, rawMappings, rawLength);
+
+        if (initialized)
+            newMapping.compile();
+
+        // put when complete, readers take it from the published map without locking
+        changeMappedInputs().put(controllerName, newMapping);
+
+        return newMapping;
+    }
+
+    /**
+     * @param rawMappings four ints per mapping: configured id, axis, button, reverse button. -1 if not set. For
+     *                    axis, the fourth int is 1 if the axis is inverted
+     */
+    private void putRawMappings(MappedInputs mapping, int[] rawMappings, int rawLength) {
+        for (int i = 0; i + 3 < rawLength; i += 4) {
+            int confId = rawMappings[i];
+            int axis = rawMappings[i + 1];
+            int button = rawMappings[i + 2];
+            int buttonR = rawMappings[i + 3];
+
+            if (axis >= 0) {
+                mapping.putMapping(new MappedInput(confId, new ControllerAxis(axis, buttonR == 1)));
+            } else if (buttonR >= 0) {
+                mapping.putMapping(new MappedInput(confId, new ControllerButton(button),
+                        new ControllerButton(buttonR)));
+            } else if (button >= 0) {
+                mapping.putMapping(new MappedInput(confId, new ControllerButton(button)));
+            }
+        }
+    }
+
+    /**
+     * @return the mapping for the given controller name, created from a pending loaded mapping if necessary
+     */
+    private MappedInputs getLoadedMapping(String controllerName) {
+        MappedInputs retVal = currentMappedInputs().get(controllerName);
+
+        if (retVal == null && pendingMappings != null) {
+            int[] rawMappings = pendingMappings.remove(controllerName);
+            if (rawMappings != null) {
+                retVal = createControllerMapping(controllerName, rawMappings, rawMappings.length,
+                        pendingCalibrations.remove(controllerName));
+            }
+        }
+
+        return retVal;
+    }
+
     protected MappedInputs getControllerMapping(Controller controller) {
         if (!initialized)
             throw new IllegalStateException("Call commitConfig() before creating Controller Listeners");
 
-        MappedInputs retVal = null;
+        // lock free if the mapping is already there, or known to be missing
+        String controllerName = controller.getName();
+        MappedInputs retVal = mappedInputs.get(controllerName);
 
-        // initialize mapping map and controller information if not already present
-        if (mappedInputs == null)
-            mappedInputs = new HashMap<>();
+        if (retVal != null) {
+            cacheHits.incrementAndGet();
+            retVal.markUsed(controller);
+        } else if (unmappedNames.contains(controllerName))
+            cacheHits.incrementAndGet();
+        else
+            retVal = createControllerMapping(controller);
 
+        return retVal;
+    }
 
-        retVal = mappedInputs.get(controller.getName());
+    /**
+     * @return the mapping for the controller from a pending loaded mapping or the default mapping, or null
+     */
+    private synchronized MappedInputs createControllerMapping(Controller controller) {
+        cacheMisses.incrementAndGet();
+        MappedInputs retVal = getLoadedMapping(controller.getName());
 
         // in case the controller is not recorded or loaded already, initialize it
         if (retVal == null) {
             MappedInputs defaultMapping = new MappedInputs(controller);
             if (getDefaultMapping(defaultMapping, controller)) {
                 retVal = defaultMapping;
-                mappedInputs.put(retVal.controllerName, retVal);
+                retVal.compile();
+                changeMappedInputs().put(retVal.controllerName, retVal);
             }
         }
 
+        if (retVal != null)
+            retVal.markUsed(controller);
+        publishChanges();
+
+        if (retVal == null) {
+            // bounded by the cache limit, the names are collected again after they were dropped
+            HashSet<String> names = (maxCachedMappings > 0 && unmappedNames.size() >= maxCachedMappings
+                    ? new HashSet<String>() : new HashSet<>(unmappedNames));
+            names.add(controller.getName());
+            unmappedNames = names;
+        }
         return retVal;
     }
 
+    /**
+     * @return number of configured inputs, which is the number of slots of every {@link CompiledMapping}
+     */
+    public int getConfiguredSlotCount() {
+        if (!initialized)
+            throw new IllegalStateException("Call commitConfig() before accessing slots");
+
+        return configuredIdBySlot.length;
+    }
+
+    /**
+     * @return the slot of the configured input as used by {@link CompiledMapping}, or -1 if not configured
+     */
+    public int getConfiguredSlot(int configuredId) {
+        if (!initialized)
+            throw new IllegalStateException("Call commitConfig() before accessing slots");
+
+        return CompiledMapping.lookupSlot(slotByConfiguredId, slotByConfiguredIdSparse, configuredId);
+    }
+
+    /**
+     * @return the configured id of the given slot
+     * @see #getConfiguredSlot(int)
+     */
+    public int getConfiguredId(int slot) {
+        if (!initialized)
+            throw new IllegalStateException("Call commitConfig() before accessing slots");
+
+        return configuredIdBySlot[slot];
+    }
+
+    /**
+     * @return the type of the configured input of the given slot, one of the TYPE_ constants of
+     * {@link CompiledMapping}
+     */
+    byte getConfiguredType(int slot) {
+        return typeBySlot[slot];
+    }
+
+    /**
+     * @return a counter that changes whenever a mapping is added, loaded or reset. Use it to invalidate cached
+     * lookups of {@link #getControllerMapping(Controller)}
+     */
+    public int getMappingGeneration() {
+        return mappingGeneration;
+    }
+
     /**
      * use this method to define a default mapping for your controllers.
      * <p>
      * The method is only called if mapping for the controller is needed, but not found. Use the
      * given controller object to find out more about the controller.
+     * <p>
+     * If a {@link SdlMappingDatabase} is set with {@link #setMappingDatabase(SdlMappingDatabase)}, its mapping for
+     * the controller is used.
      *
      * @param defaultMapping Use {@link MappedInputs#putMapping(MappedInput)} on this to define default mappings
-     * @return true if default mappings were defined and should be used
+     * @return true if default mappings were defined and should be used. If false, the method is not called again for
+     * controllers with the same name until mappings are recorded, loaded or reset
      */
     public boolean getDefaultMapping(MappedInputs defaultMapping, Controller controller) {
-        //nothing - just override it for your desires
-        return false;
+        if (mappingDatabase == null)
+            return false;
+
+        IntArray rawMappings = new IntArray();
+        if (!mappingDatabase.getRawMappings(controller, rawMappings))
+            return false;
+
+        putRawMappings(defaultMapping, rawMappings.items, rawMappings.size);
+        return true;
+    }
+
+    public SdlMappingDatabase getMappingDatabase() {
+        return mappingDatabase;
+    }
+
+    /**
+     * @param mappingDatabase database to take default mappings from, or null
+     */
+    public synchronized void setMappingDatabase(SdlMappingDatabase mappingDatabase) {
+        this.mappingDatabase = mappingDatabase;
+        mappingsChanged = true;
+        publishChanges();
     }
 
     public ControllerMappings addConfiguredInput(ConfiguredInput configuredInput) {
@@ -159,7 +746,7 @@ public class ControllerMappings {
             throw new IllegalStateException("Changing config not allowed after commitConfig() is called");
 
         if (configuredInputs == null)
-            configuredInputs = new HashMap<>();
+            configuredInputs = new IntMap<>();
 
         configuredInputs.put(configuredInput.inputId, configuredInput);
 
@@ -169,23 +756,80 @@ public class ControllerMappings {
     /**
      * call this when configuration is done
      */
-    public void commitConfig() {
+    public synchronized void commitConfig() {
+        compactConfiguredInputs();
+
+        // mappings loaded before config was committed need their configured inputs resolved now
+        for (MappedInputs controllerMapping : mappedInputs.values()) {
+            controllerMapping.resolveConfiguredInputs();
+            controllerMapping.initMissingInputs();
+            controllerMapping.compile();
+        }
+
+        // written last, so other threads see the slots when they see initialized
         initialized = true;
     }
 
+    /**
+     * assigns every configured input a dense slot index used by {@link CompiledMapping}
+     */
+    private void compactConfiguredInputs() {
+        int count = (configuredInputs != null ? configuredInputs.size : 0);
+        configuredIdBySlot = new int[count];
+        typeBySlot = new byte[count];
+        axisProcessorBySlot = null;
+
+        int minId = 0;
+        int maxId = -1;
+        int slot = 0;
+        if (configuredInputs != null)
+            for (ConfiguredInput configuredInput : configuredInputs.values()) {
+                configuredIdBySlot[slot] = configuredInput.inputId;
+                typeBySlot[slot] = CompiledMapping.toTypeByte(configuredInput.inputType);
+                if (configuredInput.axisProcessor != null && configuredInput.inputType != ConfiguredInput.Type.button) {
+                    if (axisProcessorBySlot == null)
+                        axisProcessorBySlot = new AxisProcessor[count];
+                    axisProcessorBySlot[slot] = configuredInput.axisProcessor;
+                }
+                minId = Math.min(minId, configuredInput.inputId);
+                maxId = Math.max(maxId, configuredInput.inputId);
+                slot++;
+            }
+
+        // ids are normally small numbers, then a plain array is used for the lookup
+        if (minId >= 0 && maxId < 4 * count + 64) {
+            slotByConfiguredId = new int[maxId + 1];
+            for (int i = 0; i <= maxId; i++)
+                slotByConfiguredId[i] = -1;
+            for (int i = 0; i < count; i++)
+                slotByConfiguredId[configuredIdBySlot[i]] = i;
+            slotByConfiguredIdSparse = null;
+        } else {
+            slotByConfiguredId = null;
+            slotByConfiguredIdSparse = new IntIntMap(count);
+            for (int i = 0; i < count; i++)
+                slotByConfiguredIdSparse.put(configuredIdBySlot[i], i);
+        }
+    }
+
     /**
      * resets mapping for the given controller. Warning: already instantiated {@link MappedController} will still hold
      * a reference to the old mapping, so be sure to refresh such references with its
      * {@link MappedController#refreshMappingCache()}.
-     * {@link MappedControllerAdapter} is not concerned.
+     * {@link MappedControllerAdapter} is not concerned, it refreshes its cache on {@link #getMappingGeneration()}
+     * changes.
      *
      * @param controller
      */
-    public void resetMappings(Controller controller) {
-        if (mappedInputs == null)
-            return;
-
-        mappedInputs.remove(controller.getName());
+    public synchronized void resetMappings(Controller controller) {
+        if (mappedInputs.containsKey(controller.getName()))
+            changeMappedInputs().remove(controller.getName());
+        if (pendingMappings != null) {
+            pendingMappings.remove(controller.getName());
+            pendingCalibrations.remove(controller.getName());
+        }
+        mappingsChanged = true;
+        publishChanges();
 
         waitingForReverseButtonFirstIdx = -1;
         waitingForReverseButtonAxisId = -1;
@@ -196,24 +840,71 @@ public class ControllerMappings {
     /**
      * Some Controllers might have buttons or axis that are broken and always report a value.
      * Call this method before you begin to record mappings to ignore all those buttons and axis.
+     * <p>
+     * This only checks a single moment. {@link ControllerCalibration} samples the controller over some time and also
+     * finds axis resting offsets and noise.
      *
      * @param controller controller to listen to
      */
-    public void recordButtonsToIgnoreForMapping(Controller controller) {
-        buttonsToIgnoreForRecord = new IntSet();
-        axisToIgnoreForRecord = new IntSet();
+    public synchronized void recordButtonsToIgnoreForMapping(Controller controller) {
+        IntSet buttonsToIgnore = new IntSet();
+        IntSet axisToIgnore = new IntSet();
 
-        int buttonFound = findPressedButton(controller);
-        while (buttonFound >= 0) {
-            buttonsToIgnoreForRecord.add(buttonFound);
-            buttonFound = findPressedButton(controller);
-        }
+        final int maxButtonIndex = controller.getMaxButtonIndex();
+        for (int i = controller.getMinButtonIndex(); i <= maxButtonIndex; i++)
+            if (controller.getButton(i))
+                buttonsToIgnore.add(i);
+
+        buttonsToIgnoreForRecord = null;
+        axisToIgnoreForRecord = null;
+        float[] calibration = getCalibration(controller);
+        final int maxAxisIndex = controller.getAxisCount() - 1;
+        for (int i = 0; i <= maxAxisIndex; i++)
+            if (isAxisValueRecordable(calibration, i, calibrateAxisValue(calibration, i, controller.getAxis(i))))
+                axisToIgnore.add(i);
+
+        setInputsToIgnoreForMapping(buttonsToIgnore, axisToIgnore);
+    }
+
+    /**
+     * sets the buttons and axis that are ignored when recording mappings
+     */
+    synchronized void setInputsToIgnoreForMapping(IntSet buttonsToIgnore, IntSet axisToIgnore) {
+        buttonsToIgnoreForRecord = buttonsToIgnore;
+        axisToIgnoreForRecord = axisToIgnore;
+    }
 
-        int axisFound = findHighAxisValue(controller);
-        while (axisFound >= 0) {
-            axisToIgnoreForRecord.add(axisFound);
-            axisFound = findHighAxisValue(controller);
+    /**
+     * sets calibration values for a controller. They are saved with its mapping and replace the global
+     * {@link #analogToDigitalTreshold} and {@link #maxAcceptedAnalogValue} for this controller.
+     *
+     * @param analogToDigitalTreshold treshold for the controller
+     * @param maxAcceptedAnalogValue  maximum accepted value when recording axis
+     * @param axisRestingOffsets      value reported by every axis when not touched, subtracted from the values read.
+     *                                May be empty
+     * @see ControllerCalibration
+     */
+    public synchronized void setCalibration(Controller controller, float analogToDigitalTreshold, float maxAcceptedAnalogValue,
+                               float[] axisRestingOffsets) {
+        if (!initialized)
+            throw new IllegalStateException("Calibration not allowed before commitConfig() is called");
+
+        MappedInputs mapping = getLoadedMapping(controller.getName());
+        if (mapping == null) {
+            mapping = new MappedInputs(controller);
+            changeMappedInputs().put(controller.getName(), mapping);
         }
+        mapping.isRecorded = true;
+        mapping.markUsed(controller);
+
+        float[] calibration = new float[2 + axisRestingOffsets.length];
+        calibration[0] = analogToDigitalTreshold;
+        calibration[1] = maxAcceptedAnalogValue;
+        System.arraycopy(axisRestingOffsets, 0, calibration, 2, axisRestingOffsets.length);
+        mapping.calibration = calibration;
+        mapping.compile();
+        mappingsChanged = true;
+        publishChanges();
     }
 
     /**
@@ -227,38 +918,65 @@ public class ControllerMappings {
      * call must be for an axis is the reverse button, {@link RecordResult#not_added_need_button} if is waiting for
      * the second button but no valid was pressed
      * {@link RecordResult#recorded} if a button mapping was added
+     * @see MappingRecorder for recording driven by controller events instead of polling
+     */
+    public synchronized RecordResult recordMapping(Controller controller, int configuredInputId) {
+        return recordMapping(controller, configuredInputId, findPressedButton(controller), SCAN_AXIS);
+    }
+
+    /**
+     * Record a mapping with the given button or axis, instead of checking the controller for pressed buttons or moved
+     * axis. Used by {@link MappingRecorder}.
+     *
+     * @param buttonIndex button pressed, or -1
+     * @param axisIndex   axis moved, or -1
+     * @return see {@link #recordMapping(Controller, int)}
      */
-    public RecordResult recordMapping(Controller controller, int configuredInputId) {
+    public synchronized RecordResult recordMapping(Controller controller, int configuredInputId, int buttonIndex,
+                                                   int axisIndex) {
         if (!initialized)
             throw new IllegalStateException("Recording not allowed before commitConfig() is called");
-        ConfiguredInput configuredInput = configuredInputs.get(configuredInputId);
 
-        // initialize mapping map and controller information if not already present
-        if (mappedInputs == null)
-            mappedInputs = new HashMap<>();
+        try {
+            return recordMappingLocked(controller, configuredInputId, buttonIndex, axisIndex);
+        } finally {
+            publishChanges();
+        }
+    }
 
-        if (!mappedInputs.containsKey(controller.getName()))
-            mappedInputs.put(controller.getName(), new MappedInputs(controller));
+    private RecordResult recordMappingLocked(Controller controller, int configuredInputId, int buttonIndex,
+                                             int axisIndex) {
+        ConfiguredInput configuredInput = configuredInputs.get(configuredInputId);
 
-        MappedInputs mappedInput = getControllerMapping(controller);
+        // initialize controller information if not already present
+        MappedInputs mappedInput = getLoadedMapping(controller.getName());
+        if (mappedInput == null) {
+            mappedInput = new MappedInputs(controller);
+            mappedInput.compile();
+            changeMappedInputs().put(controller.getName(), mappedInput);
+        }
         mappedInput.isRecorded = true;
+        mappedInput.markUsed(controller);
 
         switch (configuredInput.inputType) {
             case button:
-                int buttonIndex = findPressedButton(controller);
-
                 if (buttonIndex >= 0) {
                     // we found our button, hopefully
                     boolean added = mappedInput.putMapping(new MappedInput(configuredInputId,
                             new ControllerButton(buttonIndex)));
 
+                    if (added) {
+                        mappedInput.compile();
+                        mappingsChanged = true;
+                    }
+
                     return (added ? RecordResult.recorded : RecordResult.not_added);
                 } else
                     return RecordResult.nothing_done;
             case axis:
             case axisDigital:
                 // check if a button is already there, then we need to set the reverse button
-                int foundButtonIndex = findPressedButton(controller);
+                int foundButtonIndex = buttonIndex;
                 if (foundButtonIndex >= 0) {
                     if (waitingForReverseButtonAxisId == configuredInputId) {
                         //this is the reverse button
@@ -268,6 +986,8 @@ public class ControllerMappings {
                         if (added) {
                             waitingForReverseButtonAxisId = -1;
                             waitingForReverseButtonFirstIdx = -1;
+                            mappedInput.compile();
+                            mappingsChanged = true;
                             return RecordResult.recorded;
                         } else
                             return RecordResult.not_added_need_button;
@@ -284,12 +1004,18 @@ public class ControllerMappings {
 
                 // no break here on purpose!
             case axisAnalog:
-                int axisIndex = findHighAxisValue(controller);
+                if (axisIndex == SCAN_AXIS)
+                    axisIndex = findHighAxisValue(controller);
 
                 if (axisIndex >= 0) {
                     boolean added = mappedInput.putMapping(new MappedInput(configuredInputId,
                             new ControllerAxis(axisIndex)));
 
+                    if (added) {
+                        mappedInput.compile();
+                        mappingsChanged = true;
+                    }
+
                     return (added ? RecordResult.recorded : RecordResult.not_added);
                 } else
                     return RecordResult.nothing_done;
@@ -300,6 +1026,14 @@ public class ControllerMappings {
 
     }
 
+    /**
+     * forgets a first button recorded for an axis, so the next recording starts from scratch
+     */
+    synchronized void cancelReverseButtonRecording() {
+        waitingForReverseButtonAxisId = -1;
+        waitingForReverseButtonFirstIdx = -1;
+    }
+
     public enum RecordResult {recorded, nothing_done, not_added, need_second_button, not_added_need_button}
 
     public static abstract class ControllerInput {
@@ -318,10 +1052,17 @@ public class ControllerMappings {
 
     public static class ControllerAxis extends ControllerInput {
         public int axisIndex;
+        // values are negated, for controllers reporting an axis the other way round
+        public boolean inverted;
 
         public ControllerAxis(int axisIndex) {
             this.axisIndex = axisIndex;
         }
+
+        public ControllerAxis(int axisIndex, boolean inverted) {
+            this.axisIndex = axisIndex;
+            this.inverted = inverted;
+        }
     }
 
     /**
@@ -335,10 +1076,13 @@ public class ControllerMappings {
         private ControllerInput controllerInput;
         // if an axis is simulated by two buttons, second one is needed
         private ControllerButton secondButtonForAxis;
+        // resolved on construction so lookups don't need a second map access, null if not (yet) configured
+        private ConfiguredInput configuredInput;
 
         public MappedInput(int configuredInputId, ControllerInput controllerInput) {
             this.configuredInputId = configuredInputId;
             this.controllerInput = controllerInput;
+            resolveConfiguredInput();
         }
 
         public MappedInput(int configuredInputId, ControllerButton controllerInput, ControllerButton
@@ -346,6 +1090,11 @@ public class ControllerMappings {
             this.configuredInputId = configuredInputId;
             this.controllerInput = controllerInput;
             this.secondButtonForAxis = reverseButton;
+            resolveConfiguredInput();
+        }
+
+        private void resolveConfiguredInput() {
+            configuredInput = (configuredInputs != null ? configuredInputs.get(configuredInputId) : null);
         }
 
         /**
@@ -371,8 +1120,19 @@ public class ControllerMappings {
             return -1;
         }
 
+        /**
+         * @return true if this mapping is a real axis whose values are negated
+         */
+        public boolean isAxisInverted() {
+            return controllerInput instanceof ControllerAxis && ((ControllerAxis) controllerInput).inverted;
+        }
+
         public ConfiguredInput.Type getConfiguredInputType() {
-            return configuredInputs.get(configuredInputId).inputType;
+            return configuredInput.inputType;
+        }
+
+        public ConfiguredInput getConfiguredInput() {
+            return configuredInput;
         }
 
         public int getReverseButtonIndex() {
@@ -383,17 +1143,62 @@ public class ControllerMappings {
         }
     }
 
+    /**
+     * Lookup tables of a {@link MappedInputs}. They are never changed once published, a change publishes a copy.
+     */
+    private static final class MappingTables {
+        // in the order they were added
+        final MappedInput[] mappings;
+        final IntMap<MappedInput> byConfigured;
+        // button and axis indexes are small and dense, so they are used as array index directly
+        final MappedInput[] byButton;
+        final MappedInput[] byAxis;
+        // one bit per configured slot without mapping, null before commitConfig() was called
+        final long[] missingSlots;
+        final int missingCount;
+
+        MappingTables(MappedInput[] mappings, IntMap<MappedInput> byConfigured, MappedInput[] byButton,
+                      MappedInput[] byAxis, long[] missingSlots, int missingCount) {
+            this.mappings = mappings;
+            this.byConfigured = byConfigured;
+            this.byButton = byButton;
+            this.byAxis = byAxis;
+            this.missingSlots = missingSlots;
+            this.missingCount = missingCount;
+        }
+
+        MappedInput getByButton(int buttonIndex) {
+            return (buttonIndex >= 0 && buttonIndex < byButton.length ? byButton[buttonIndex] : null);
+        }
+
+        MappedInput getByAxis(int axisIndex) {
+            return (axisIndex >= 0 && axisIndex < byAxis.length ? byAxis[axisIndex] : null);
+        }
+
+        MappingTables withMissingSlots(long[] missingSlots, int missingCount) {
+            return new MappingTables(mappings, byConfigured, byButton, byAxis, missingSlots, missingCount);
+        }
+    }
+
     /**
      * Input mappings for a single controller. Class is protected and not for accessing from outside.
      * Mappings are constructed via {@link #recordMapping(Controller, int)}
+     * <p>
+     * Changes are made under the lock of the {@link ControllerMappings}. They build new lookup tables and a new
+     * {@link CompiledMapping} and publish them, so reading needs no lock and never sees a change in progress.
      */
     protected class MappedInputs {
         public boolean isRecorded;
         private String controllerName;
-        private HashMap<Integer, MappedInput> mappingsByConfigured;
-        private HashMap<Integer, MappedInput> mappingsByButton;
-        private HashMap<Integer, MappedInput> mappingsByAxis;
-        private HashMap<Integer, MappedInput> mappingsByPov;
+        private volatile MappingTables tables;
+        private final IntMap<MappedInput> mappingsByPov;
+        private volatile CompiledMapping compiledMapping;
+        // analog to digital treshold, max accepted analog value, resting offset per axis. null if not calibrated
+        private volatile float[] calibration;
+        // for evicting the least recently used mappings, see setMaxCachedMappings()
+        private volatile long lastUsed;
+        // every controller instance that looked up this mapping, as long as it is connected
+        private volatile WeakReference<Controller>[] users;
 
         private MappedInputs(Controller controller) {
             this(controller.getName());
@@ -401,24 +1206,254 @@ public class ControllerMappings {
 
         private MappedInputs(String controllerName) {
             this.controllerName = controllerName;
-            mappingsByConfigured = new HashMap<>(mappedInputs.size());
-            mappingsByButton = new HashMap<>(mappedInputs.size());
-            mappingsByAxis = new HashMap<>(mappedInputs.size());
-            mappingsByPov = new HashMap<>(2);
+            tables = new MappingTables(new MappedInput[0], new IntMap<MappedInput>(4), new MappedInput[16],
+                    new MappedInput[8], null, 0);
+            mappingsByPov = new IntMap<>(2);
+
+            if (initialized)
+                initMissingInputs();
         }
 
+        /**
+         * @return true if all configured inputs are mapped
+         * @see #isComplete()
+         */
         public boolean checkCompleted() {
-            boolean completed = true;
-            for (Integer configureId : configuredInputs.keySet())
-                completed = completed && mappingsByConfigured.containsKey(configureId);
+            return isComplete();
+        }
+
+        /**
+         * @return true if all configured inputs are mapped. Does not iterate the configured inputs once
+         * {@link ControllerMappings#commitConfig()} was called, so it can be called every frame
+         */
+        public boolean isComplete() {
+            if (configuredInputs == null)
+                return true;
+
+            MappingTables tables = this.tables;
+            if (tables.missingSlots != null)
+                return tables.missingCount == 0;
+
+            // mappings are unique per configured input
+            int mappedCount = 0;
+            for (MappedInput mapping : tables.mappings)
+                if (configuredInputs.containsKey(mapping.configuredInputId))
+                    mappedCount++;
+
+            return mappedCount == configuredInputs.size;
+        }
+
+        /**
+         * @return number of configured inputs not mapped yet
+         */
+        public int getMissingCount() {
+            MappingTables tables = this.tables;
+            if (tables.missingSlots == null)
+                throw new IllegalStateException("Call commitConfig() before accessing missing inputs");
+
+            return tables.missingCount;
+        }
+
+        /**
+         * Finds the configured inputs not mapped yet, without producing garbage:
+         * <pre>
+         * for (int slot = mappedInputs.nextMissingSlot(0); slot >= 0; slot = mappedInputs.nextMissingSlot(slot + 1))
+         *     showMissing(controllerMappings.getConfiguredId(slot));
+         * </pre>
+         *
+         * @return the first slot from the given one on whose configured input is not mapped, or -1 if there is none
+         * @see ControllerMappings#getConfiguredId(int)
+         */
+        public int nextMissingSlot(int fromSlot) {
+            long[] missing = tables.missingSlots;
+            if (missing == null)
+                throw new IllegalStateException("Call commitConfig() before accessing missing inputs");
+
+            int word = fromSlot >> 6;
+            if (fromSlot < 0 || word >= missing.length)
+                return -1;
+
+            long bits = missing[word] & (-1L << fromSlot);
+            while (bits == 0) {
+                word++;
+                if (word >= missing.length)
+                    return -1;
+                bits = missing[word];
+            }
+            return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+
+        /**
+         * sets the bit of every configured slot not mapped, called when the slots are known
+         */
+        private void initMissingInputs() {
+            MappingTables tables = this.tables;
+            int slotCount = configuredIdBySlot.length;
+            long[] missing = new long[(slotCount + 63) >> 6];
+            int count = 0;
+            for (int slot = 0; slot < slotCount; slot++)
+                if (!tables.byConfigured.containsKey(configuredIdBySlot[slot])) {
+                    missing[slot >> 6] |= 1L << slot;
+                    count++;
+                }
+
+            this.tables = tables.withMissingSlots(missing, count);
+        }
+
+        private void markUsed(Controller controller) {
+            lastUsed = useClock.incrementAndGet();
+
+            WeakReference<Controller>[] users = this.users;
+            if (users != null)
+                for (WeakReference<Controller> user : users)
+                    if (user.get() == controller)
+                        return;
+
+            addUser(controller);
+        }
+
+        /**
+         * adds another controller instance to the users. Users that are gone or disconnected are dropped
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized void addUser(Controller controller) {
+            WeakReference<Controller>[] users = this.users;
+            int userCount = (users != null ? users.length : 0);
+            WeakReference<Controller>[] newUsers = new WeakReference[userCount + 1];
+            int newUserCount = 0;
+            for (int i = 0; i < userCount; i++) {
+                Controller user = users[i].get();
+                if (user == controller)
+                    return;
+                if (user != null && user.isConnected())
+                    newUsers[newUserCount++] = users[i];
+            }
+            newUsers[newUserCount++] = new WeakReference<>(controller);
+
+            this.users = (newUserCount == newUsers.length ? newUsers : Arrays.copyOf(newUsers, newUserCount));
+        }
+
+        /**
+         * @return true if any controller that looked up this mapping is still connected
+         */
+        private boolean isInUse() {
+            WeakReference<Controller>[] users = this.users;
+            if (users != null)
+                for (WeakReference<Controller> user : users) {
+                    Controller controller = user.get();
+                    if (controller != null && controller.isConnected())
+                        return true;
+                }
+
+            return false;
+        }
+
+        /**
+         * @return mappings in the form read by {@link #putRawMappings(MappedInputs, int[], int)}
+         */
+        private int[] toRawMappings() {
+            MappedInput[] mappings = tables.mappings;
+            int[] rawMappings = new int[mappings.length * 4];
+            int i = 0;
+            for (MappedInput mapping : mappings) {
+                rawMappings[i] = mapping.configuredInputId;
+                rawMappings[i + 1] = mapping.getAxisIndex();
+                rawMappings[i + 2] = mapping.getButtonIndex();
+                rawMappings[i + 3] = mapping.isAxisInverted() ? 1 : mapping.getReverseButtonIndex();
+                i += 4;
+            }
+            return rawMappings;
+        }
 
-            return completed;
+        private void resolveConfiguredInputs() {
+            for (MappedInput mapping : tables.mappings)
+                mapping.resolveConfiguredInput();
+        }
+
+        /**
+         * @return the compiled, read-only form of this mapping. Only available after
+         * {@link ControllerMappings#commitConfig()} was called. Recording replaces it with a new instance, the
+         * returned one is never changed
+         */
+        public CompiledMapping getCompiledMapping() {
+            CompiledMapping compiled = compiledMapping;
+            if (compiled == null && initialized)
+                synchronized (ControllerMappings.this) {
+                    compiled = (compiledMapping != null ? compiledMapping : compile());
+                }
+            return compiled;
+        }
+
+        /**
+         * compiles and publishes the current mappings, called after every change
+         */
+        private CompiledMapping compile() {
+            MappingTables tables = this.tables;
+            CompiledMapping compiled = new CompiledMapping(controllerName, slotByConfiguredId,
+                    slotByConfiguredIdSparse, configuredIdBySlot, typeBySlot, axisProcessorBySlot,
+                    tables.byButton.length, tables.byAxis.length);
+
+            for (MappedInput mapping : tables.mappings) {
+                int slot = compiled.getSlot(mapping.configuredInputId);
+                if (slot < 0)
+                    continue;
+
+                if (mapping.controllerInput instanceof ControllerButton)
+                    compiled.putButton(slot, ((ControllerButton) mapping.controllerInput).buttonIndex,
+                            mapping.getReverseButtonIndex());
+                else if (mapping.controllerInput instanceof ControllerAxis)
+                    compiled.putAxis(slot, ((ControllerAxis) mapping.controllerInput).axisIndex,
+                            mapping.isAxisInverted());
+            }
+
+            if (calibration != null)
+                compiled.setCalibration(calibration[0], Arrays.copyOfRange(calibration, 2, calibration.length));
+
+            compiledMapping = compiled;
+            return compiled;
+        }
+
+        private MappedInput[] copyWithIndex(MappedInput[] array, int index) {
+            MappedInput[] newArray = new MappedInput[index < array.length ? array.length
+                    : Math.max(index + 1, array.length * 2)];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            return newArray;
         }
 
         public String getControllerName() {
             return controllerName;
         }
 
+        /**
+         * @return true if calibration values were set for this controller
+         * @see ControllerMappings#setCalibration(Controller, float, float, float[])
+         */
+        public boolean isCalibrated() {
+            return calibration != null;
+        }
+
+        /**
+         * @return treshold for this controller, or the global one if not calibrated
+         */
+        public float getAnalogToDigitalTreshold() {
+            return calibration != null ? calibration[0] : analogToDigitalTreshold;
+        }
+
+        /**
+         * @return maximum accepted analog value for this controller, or the global one if not calibrated
+         */
+        public float getMaxAcceptedAnalogValue() {
+            return calibration != null ? calibration[1] : maxAcceptedAnalogValue;
+        }
+
+        /**
+         * @return value the axis reports when not touched, 0 if not calibrated
+         */
+        public float getAxisRestingOffset(int axisIndex) {
+            return (calibration != null && axisIndex >= 0 && axisIndex + 2 < calibration.length
+                    ? calibration[axisIndex + 2] : 0);
+        }
+
         /**
          * add a new mapping
          *
@@ -426,16 +1461,20 @@ public class ControllerMappings {
          * @return true if this was possible, false if mapping could not be added
          */
         public boolean putMapping(MappedInput mapping) {
-            if (mappingsByConfigured.containsKey(mapping.configuredInputId))
+            MappingTables tables = this.tables;
+            if (tables.byConfigured.containsKey(mapping.configuredInputId))
                 return false;
 
+            MappedInput[] byButton = tables.byButton;
+            MappedInput[] byAxis = tables.byAxis;
+
             if (mapping.controllerInput instanceof ControllerButton) {
                 ControllerButton controllerButton = (ControllerButton) mapping.controllerInput;
-                if (mappingsByButton.containsKey(controllerButton.buttonIndex))
+                if (controllerButton.buttonIndex < 0 || tables.getByButton(controllerButton.buttonIndex) != null)
                     return false;
 
-                if (mapping.secondButtonForAxis != null &&
-                        mappingsByButton.containsKey((mapping.secondButtonForAxis).buttonIndex))
+                if (mapping.secondButtonForAxis != null && (mapping.secondButtonForAxis.buttonIndex < 0 ||
+                        tables.getByButton(mapping.secondButtonForAxis.buttonIndex) != null))
                     return false;
 
                 // just in case reverse and first button are the same...
@@ -443,21 +1482,44 @@ public class ControllerMappings {
                         controllerButton.buttonIndex == mapping.secondButtonForAxis.buttonIndex)
                     return false;
 
-                mappingsByButton.put(controllerButton.buttonIndex, mapping);
+                int maxIndex = controllerButton.buttonIndex;
+                if (mapping.secondButtonForAxis != null)
+                    maxIndex = Math.max(maxIndex, mapping.secondButtonForAxis.buttonIndex);
+                byButton = copyWithIndex(byButton, maxIndex);
+                byButton[controllerButton.buttonIndex] = mapping;
                 if (mapping.secondButtonForAxis != null)
-                    mappingsByButton.put(mapping.secondButtonForAxis.buttonIndex, mapping);
+                    byButton[mapping.secondButtonForAxis.buttonIndex] = mapping;
 
             } else if (mapping.controllerInput instanceof ControllerAxis) {
                 ControllerAxis controllerAxis = (ControllerAxis) mapping.controllerInput;
-                if (mappingsByAxis.containsKey(controllerAxis.axisIndex))
+                if (controllerAxis.axisIndex < 0 || tables.getByAxis(controllerAxis.axisIndex) != null)
                     return false;
 
-                mappingsByAxis.put(controllerAxis.axisIndex, mapping);
+                byAxis = copyWithIndex(byAxis, controllerAxis.axisIndex);
+                byAxis[controllerAxis.axisIndex] = mapping;
 
             } else
                 return false;
 
-            mappingsByConfigured.put(mapping.configuredInputId, mapping);
+            MappedInput[] mappings = Arrays.copyOf(tables.mappings, tables.mappings.length + 1);
+            mappings[tables.mappings.length] = mapping;
+            IntMap<MappedInput> byConfigured = new IntMap<>(tables.byConfigured);
+            byConfigured.put(mapping.configuredInputId, mapping);
+
+            long[] missingSlots = tables.missingSlots;
+            int missingCount = tables.missingCount;
+            if (missingSlots != null) {
+                int slot = CompiledMapping.lookupSlot(slotByConfiguredId, slotByConfiguredIdSparse,
+                        mapping.configuredInputId);
+                if (slot >= 0 && (missingSlots[slot >> 6] & (1L << slot)) != 0) {
+                    missingSlots = missingSlots.clone();
+                    missingSlots[slot >> 6] &= ~(1L << slot);
+                    missingCount--;
+                }
+            }
+
+            // readers see either the old or the new tables, the compiled mapping follows when the writer compiles
+            this.tables = new MappingTables(mappings, byConfigured, byButton, byAxis, missingSlots, missingCount);
 
             return true;
         }
@@ -469,22 +1531,43 @@ public class ControllerMappings {
          */
         public JsonValue toJson() {
             JsonValue json = new JsonValue(JsonValue.ValueType.array);
-            for (MappedInput mapping : mappingsByConfigured.values()) {
+            for (MappedInput mapping : tables.mappings) {
                 JsonValue jsonmaping = new JsonValue(JsonValue.ValueType.object);
                 jsonmaping.addChild("confId", new JsonValue(mapping.configuredInputId));
-                if (mapping.controllerInput instanceof ControllerAxis)
-                    jsonmaping.addChild("axis", new JsonValue(((ControllerAxis) mapping.controllerInput).axisIndex));
-                else if (mapping.controllerInput instanceof ControllerButton) {
+                if (mapping.controllerInput instanceof ControllerAxis) {
+                    jsonmaping.addChild("axis",
+                            new JsonValue(((ControllerAxis) mapping.controllerInput).axisIndex));
+                    if (mapping.isAxisInverted())
+                        jsonmaping.addChild("inverted", new JsonValue(true));
+                } else if (mapping.controllerInput instanceof ControllerButton) {
                     jsonmaping.addChild("button",
                             new JsonValue(((ControllerButton) mapping.controllerInput).buttonIndex));
                     if (mapping.secondButtonForAxis != null)
-                        jsonmaping.addChild("buttonR", new JsonValue((mapping.secondButtonForAxis.buttonIndex)));
+                        jsonmaping.addChild("buttonR",
+                                new JsonValue((mapping.secondButtonForAxis.buttonIndex)));
                 }
                 json.addChild(jsonmaping);
             }
             return json;
         }
 
+        private void writeJson(JsonWriter json) throws IOException {
+            for (MappedInput mapping : tables.mappings) {
+                json.object();
+                json.set("confId", mapping.configuredInputId);
+                if (mapping.controllerInput instanceof ControllerAxis) {
+                    json.set("axis", ((ControllerAxis) mapping.controllerInput).axisIndex);
+                    if (mapping.isAxisInverted())
+                        json.set("inverted", true);
+                } else if (mapping.controllerInput instanceof ControllerButton) {
+                    json.set("button", ((ControllerButton) mapping.controllerInput).buttonIndex);
+                    if (mapping.secondButtonForAxis != null)
+                        json.set("buttonR", mapping.secondButtonForAxis.buttonIndex);
+                }
+                json.pop();
+            }
+        }
+
         /**
          * returns if a certain button is already in mapping
          *
@@ -492,27 +1575,27 @@ public class ControllerMappings {
          * @return
          */
         protected boolean isButtonInMapping(int buttonIndex) {
-            return mappingsByButton.containsKey(buttonIndex);
+            return tables.getByButton(buttonIndex) != null;
         }
 
         public ConfiguredInput getConfiguredFromButton(int buttonIndex) {
-            MappedInput mappedInput = mappingsByButton.get(buttonIndex);
+            MappedInput mappedInput = tables.getByButton(buttonIndex);
 
             // if hit, check if it is not the reverse button
             if (mappedInput != null && (mappedInput.secondButtonForAxis == null ||
                     mappedInput.secondButtonForAxis.buttonIndex != buttonIndex))
-                return configuredInputs.get(mappedInput.configuredInputId);
+                return mappedInput.configuredInput;
             else
                 return null;
         }
 
         public ConfiguredInput getConfiguredFromReverseButton(int buttonIndex) {
-            MappedInput mappedInput = mappingsByButton.get(buttonIndex);
+            MappedInput mappedInput = tables.getByButton(buttonIndex);
 
             // if hit, check if it is the reverse button
             if (mappedInput != null && mappedInput.secondButtonForAxis != null &&
                     mappedInput.secondButtonForAxis.buttonIndex == buttonIndex)
-                return configuredInputs.get(mappedInput.configuredInputId);
+                return mappedInput.configuredInput;
             else
                 return null;
         }
@@ -524,14 +1607,14 @@ public class ControllerMappings {
          * @return MappedInput
          */
         public MappedInput getMappedInput(int configuredId) {
-            return mappingsByConfigured.get(configuredId);
+            return tables.byConfigured.get(configuredId);
         }
 
         public ConfiguredInput getConfiguredFromAxis(int axisIndex) {
-            MappedInput mappedInput = mappingsByAxis.get(axisIndex);
+            MappedInput mappedInput = tables.getByAxis(axisIndex);
 
             if (mappedInput != null)
-                return configuredInputs.get(mappedInput.configuredInputId);
+                return mappedInput.configuredInput;
             else
                 return null;
         }
@@ -540,11 +1623,125 @@ public class ControllerMappings {
             MappedInput mappedInput = mappingsByPov.get(povIndex * 10 + (vertical ? 1 : 0));
 
             if (mappedInput != null)
-                return configuredInputs.get(mappedInput.configuredInputId);
+                return mappedInput.configuredInput;
             else
                 return null;
         }
     }
 
-    //TODO vordefinierte XBox und (S)NES Definitionen
+    /**
+     * Event based json reader for mappings, does not build a {@link JsonValue} tree
+     */
+    private class MappingsJsonReader extends JsonReader {
+        private final IntArray rawMappings = new IntArray();
+        private final FloatArray offsets = new FloatArray();
+        private int depth;
+        private boolean inOffsets;
+        private String controllerName;
+        private int confId, axis, button, buttonR;
+        private boolean inverted;
+        private float treshold, maxValue;
+
+        @Override
+        protected void startArray(String name) {
+            depth++;
+
+            if (depth == 3 && "offsets".equals(name))
+                inOffsets = true;
+        }
+
+        @Override
+        protected void startObject(String name) {
+            depth++;
+
+            if (depth == 2) {
+                controllerName = null;
+                rawMappings.clear();
+                offsets.clear();
+                treshold = Float.NaN;
+                maxValue = Float.NaN;
+            } else if (depth == 4) {
+                confId = -1;
+                axis = -1;
+                button = -1;
+                buttonR = -1;
+                inverted = false;
+            }
+        }
+
+        @Override
+        protected void pop() {
+            if (depth == 4) {
+                rawMappings.add(confId);
+                rawMappings.add(axis);
+                rawMappings.add(button);
+                rawMappings.add(axis >= 0 && inverted ? 1 : buttonR);
+            } else if (depth == 3)
+                inOffsets = false;
+            else if (depth == 2 && controllerName != null)
+                loadControllerMapping(controllerName, rawMappings.items, rawMappings.size, getCalibration());
+
+            depth--;
+        }
+
+        private float[] getCalibration() {
+            if (Float.isNaN(treshold) || Float.isNaN(maxValue))
+                return null;
+
+            float[] calibration = new float[2 + offsets.size];
+            calibration[0] = treshold;
+            calibration[1] = maxValue;
+            System.arraycopy(offsets.items, 0, calibration, 2, offsets.size);
+            return calibration;
+        }
+
+        @Override
+        protected void string(String name, String value) {
+            if (depth == 2 && "name".equals(name))
+                controllerName = value;
+        }
+
+        /**
+         * @return true if the value belongs to the calibration
+         */
+        private boolean calibrationValue(String name, float value) {
+            if (depth == 3 && inOffsets)
+                offsets.add(value);
+            else if (depth == 2 && "treshold".equals(name))
+                treshold = value;
+            else if (depth == 2 && "maxValue".equals(name))
+                maxValue = value;
+            else
+                return false;
+
+            return true;
+        }
+
+        @Override
+        protected void number(String name, double value, String stringValue) {
+            if (!calibrationValue(name, (float) value))
+                number(name, (long) value, stringValue);
+        }
+
+        @Override
+        protected void number(String name, long value, String stringValue) {
+            if (calibrationValue(name, value) || depth != 4 || name == null)
+                return;
+
+            if (name.equals("confId"))
+                confId = (int) value;
+            else if (name.equals("axis"))
+                axis = (int) value;
+            else if (name.equals("button"))
+                button = (int) value;
+            else if (name.equals("buttonR"))
+                buttonR = (int) value;
+        }
+
+        @Override
+        protected void bool(String name, boolean value) {
+            if (depth == 4 && "inverted".equals(name))
+                inverted = value;
+        }
+    }
 }
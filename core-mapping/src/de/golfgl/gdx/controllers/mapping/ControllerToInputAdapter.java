@@ -2,9 +2,8 @@ package de.golfgl.gdx.controllers.mapping;
 
 import com.badlogic.gdx.InputProcessor;
 import com.badlogic.gdx.controllers.Controller;
-import com.badlogic.gdx.utils.Array;
-
-import java.util.HashMap;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
 
 /**
  * This class adapts mapped controller keys to key events and sends to an targetInput processor.
@@ -20,22 +19,51 @@ import java.util.HashMap;
  *     ...
  *     controllerToInputAdapter.setInputProcessor(yourKeyInputProcessor);
  * </pre>
+ * Pressed axis keys are kept in bitsets by controller slot (see {@link #getControllerSlot(Controller)}), so events
+ * are handled with a few array operations, regardless of the number of controllers connected.
+ * <p>
+ * Held axis keys can be repeated, e.g. for menu navigation. Activate it with
+ * {@link #setKeyRepeat(float, float, float, float)} and call {@link #update(float)} every frame.
  * <p>
  * Created by Benjamin Schulte on 06.11.2017.
  */
 
 public class ControllerToInputAdapter extends MappedControllerAdapter {
     public float analogToDigitalTreshold;
+    /**
+     * if set above {@link #analogToDigitalTreshold}, an axis key is pressed when this value is reached and released
+     * below {@link #analogToDigitalTreshold}. 0 presses and releases keys at {@link #analogToDigitalTreshold}.
+     * Default is {@link ControllerMappings#analogToDigitalEnterTreshold}
+     */
+    public float analogToDigitalEnterTreshold;
+    // returned by buttonMappings for configured buttons without key
+    private static final int NO_KEY = Integer.MIN_VALUE;
+    /**
+     * maximum number of keys repeated at the same time, further keys are not repeated
+     */
+    public static final int MAX_REPEATING_KEYS = 16;
     private InputProcessor targetInput;
-    private HashMap<Integer, Integer> buttonMappings;
-    private HashMap<Integer, AxisMapping> axisMappings;
+    private IntIntMap buttonMappings;
+    private IntMap<AxisMapping> axisMappings;
+    private float repeatDelay;
+    private float repeatInterval;
+    private float repeatMinInterval;
+    private float repeatAcceleration = 1;
+    private boolean repeatButtonKeys;
+    // keys currently held and repeated
+    private final int[] repeatKeyCodes = new int[MAX_REPEATING_KEYS];
+    private final Controller[] repeatControllers = new Controller[MAX_REPEATING_KEYS];
+    private final float[] repeatTimesLeft = new float[MAX_REPEATING_KEYS];
+    private final float[] repeatIntervals = new float[MAX_REPEATING_KEYS];
+    private int repeatCount;
 
     public ControllerToInputAdapter(ControllerMappings mappings) {
         super(mappings);
 
         analogToDigitalTreshold = mappings.analogToDigitalTreshold;
-        buttonMappings = new HashMap<>();
-        axisMappings = new HashMap<>();
+        analogToDigitalEnterTreshold = mappings.analogToDigitalEnterTreshold;
+        buttonMappings = new IntIntMap();
+        axisMappings = new IntMap<>();
     }
 
     public InputProcessor getInputProcessor() {
@@ -46,60 +74,245 @@ public class ControllerToInputAdapter extends MappedControllerAdapter {
         this.targetInput = targetInput;
     }
 
+    /**
+     * activates repeating held axis keys. A repeated key is sent as another key down to
+     * {@link #sendKeyDownToTarget(int, Controller)}, key up is sent once when it is released.
+     *
+     * @param initialDelay seconds from key down to the first repeat. 0 deactivates repeating
+     * @param interval     seconds between the first repeats
+     * @param minInterval  seconds between repeats are not reduced below this
+     * @param acceleration the interval is multiplied with this after every repeat. 1 for a constant rate
+     */
+    public ControllerToInputAdapter setKeyRepeat(float initialDelay, float interval, float minInterval,
+                                                 float acceleration) {
+        if (initialDelay < 0 || interval <= 0 || minInterval <= 0 || acceleration <= 0)
+            throw new IllegalArgumentException("Key repeat times and acceleration must be positive");
+
+        repeatDelay = initialDelay;
+        repeatInterval = interval;
+        repeatMinInterval = Math.min(minInterval, interval);
+        repeatAcceleration = acceleration;
+
+        if (initialDelay == 0)
+            clearRepeats();
+
+        return this;
+    }
+
+    public boolean isKeyRepeat() {
+        return repeatDelay > 0;
+    }
+
+    public float getRepeatDelay() {
+        return repeatDelay;
+    }
+
+    public float getRepeatInterval() {
+        return repeatInterval;
+    }
+
+    public float getRepeatMinInterval() {
+        return repeatMinInterval;
+    }
+
+    public float getRepeatAcceleration() {
+        return repeatAcceleration;
+    }
+
+    public boolean isRepeatButtonKeys() {
+        return repeatButtonKeys;
+    }
+
+    /**
+     * @param repeatButtonKeys true if keys mapped to buttons are repeated as well, not only axis keys. Default is
+     *                         false
+     */
+    public ControllerToInputAdapter setRepeatButtonKeys(boolean repeatButtonKeys) {
+        this.repeatButtonKeys = repeatButtonKeys;
+        return this;
+    }
+
+    /**
+     * sends key repeats that are due. Call it every frame when key repeat is activated, at most one repeat per key
+     * is sent per call.
+     *
+     * @param delta time in seconds
+     */
+    public void update(float delta) {
+        if (targetInput == null)
+            return;
+
+        for (int i = 0; i < repeatCount; i++) {
+            repeatTimesLeft[i] -= delta;
+
+            if (repeatTimesLeft[i] <= 0) {
+                float interval = repeatIntervals[i];
+                repeatIntervals[i] = Math.max(repeatMinInterval, interval * repeatAcceleration);
+                repeatTimesLeft[i] = Math.max(0, repeatTimesLeft[i] + interval);
+                sendKeyDownToTarget(repeatKeyCodes[i], repeatControllers[i]);
+                if (getMetrics() != null)
+                    getMetrics().count(MappingMetrics.KEYS_SENT);
+            }
+        }
+    }
+
+    private void startRepeat(int keyCode, Controller controller) {
+        if (repeatDelay <= 0 || repeatCount == MAX_REPEATING_KEYS)
+            return;
+
+        repeatKeyCodes[repeatCount] = keyCode;
+        repeatControllers[repeatCount] = controller;
+        repeatTimesLeft[repeatCount] = repeatDelay;
+        repeatIntervals[repeatCount] = repeatInterval;
+        repeatCount++;
+    }
+
+    private void stopRepeat(int keyCode, Controller controller) {
+        for (int i = 0; i < repeatCount; i++)
+            if (repeatKeyCodes[i] == keyCode && repeatControllers[i] == controller) {
+                removeRepeat(i);
+                return;
+            }
+    }
+
+    private void removeRepeat(int index) {
+        // order does not matter, so the last one is moved to the free index
+        repeatCount--;
+        repeatKeyCodes[index] = repeatKeyCodes[repeatCount];
+        repeatControllers[index] = repeatControllers[repeatCount];
+        repeatTimesLeft[index] = repeatTimesLeft[repeatCount];
+        repeatIntervals[index] = repeatIntervals[repeatCount];
+        repeatControllers[repeatCount] = null;
+    }
+
+    private void clearRepeats() {
+        for (int i = 0; i < repeatCount; i++)
+            repeatControllers[i] = null;
+        repeatCount = 0;
+    }
+
     @Override
     public boolean configuredAxisMoved(Controller controller, int axisId, float value) {
-        if (targetInput == null || !axisMappings.containsKey(axisId))
+        if (targetInput == null)
             return false;
 
         AxisMapping thisMapping = axisMappings.get(axisId);
-        boolean negativePressed;
-        boolean positivePressed;
-
-        if (value >= analogToDigitalTreshold) {
-            negativePressed = false;
-            positivePressed = true;
-        } else if (value <= -analogToDigitalTreshold) {
-            negativePressed = true;
-            positivePressed = false;
+        if (thisMapping == null)
+            return keyUnmapped();
+
+        int controllerSlot = getControllerSlot(controller);
+        boolean wasNegativePressed = isSet(thisMapping.negativePressed, controllerSlot);
+        boolean wasPositivePressed = isSet(thisMapping.positivePressed, controllerSlot);
+        float lastValue = wasPositivePressed ? 1 : wasNegativePressed ? -1 : 0;
+        float digitalValue = CompiledMapping.toDigital(value, lastValue, analogToDigitalTreshold,
+                analogToDigitalEnterTreshold);
+        boolean negativePressed = digitalValue < 0;
+        boolean positivePressed = digitalValue > 0;
+
+        boolean negativeChanged = negativePressed != wasNegativePressed;
+        boolean positiveChanged = positivePressed != wasPositivePressed;
+        if (negativeChanged)
+            thisMapping.negativePressed = set(thisMapping.negativePressed, controllerSlot, negativePressed);
+        if (positiveChanged)
+            thisMapping.positivePressed = set(thisMapping.positivePressed, controllerSlot, positivePressed);
+
+        if (negativeChanged)
+            keyChanged(thisMapping.keyCodeNegative, controller, negativePressed, true);
+
+        if (positiveChanged)
+            keyChanged(thisMapping.keyCodePositive, controller, positivePressed, true);
+
+        return true;
+    }
+
+    private boolean keyUnmapped() {
+        if (getMetrics() != null)
+            getMetrics().count(MappingMetrics.KEYS_UNMAPPED);
+        return false;
+    }
+
+    /**
+     * @param repeat true if the key should be repeated while held
+     */
+    private boolean keyChanged(int keyCode, Controller controller, boolean pressed, boolean repeat) {
+        if (getMetrics() != null)
+            getMetrics().count(MappingMetrics.KEYS_SENT);
+
+        if (pressed) {
+            if (repeat)
+                startRepeat(keyCode, controller);
+            return sendKeyDownToTarget(keyCode, controller);
         } else {
-            negativePressed = false;
-            positivePressed = false;
+            // repeating might have been changed while the key was held
+            stopRepeat(keyCode, controller);
+            return sendKeyUpToTarget(keyCode, controller);
         }
+    }
 
-        boolean negativeChanged = thisMapping.setNegativeKeyPressed(controller, negativePressed);
-        boolean positiveChanged = thisMapping.setPositiveKeyPressed(controller, positivePressed);
+    private static boolean isSet(long[] bits, int index) {
+        int word = index >>> 6;
+        return word < bits.length && (bits[word] & 1L << index) != 0;
+    }
 
-        if (negativeChanged) {
-            if (negativePressed)
-                sendKeyDownToTarget(thisMapping.keyCodeNegative, controller);
-            else
-                sendKeyUpToTarget(thisMapping.keyCodeNegative, controller);
+    /**
+     * @return the given bitset, or a bigger copy if index does not fit
+     */
+    private static long[] set(long[] bits, int index, boolean value) {
+        int word = index >>> 6;
+        if (word >= bits.length) {
+            if (!value)
+                return bits;
+            long[] newBits = new long[word + 1];
+            System.arraycopy(bits, 0, newBits, 0, bits.length);
+            bits = newBits;
         }
 
-        if (positiveChanged) {
-            if (positivePressed)
-                sendKeyDownToTarget(thisMapping.keyCodePositive, controller);
-            else
-                sendKeyUpToTarget(thisMapping.keyCodePositive, controller);
+        if (value)
+            bits[word] |= 1L << index;
+        else
+            bits[word] &= ~(1L << index);
+
+        return bits;
+    }
+
+    @Override
+    public void disconnected(Controller controller) {
+        // the controller slot will be reused, so its keys must not be left pressed
+        int controllerSlot = getControllerSlot(controller);
+        for (IntMap.Entry<AxisMapping> entry : axisMappings.entries()) {
+            AxisMapping axisMapping = entry.value;
+            axisMapping.negativePressed = set(axisMapping.negativePressed, controllerSlot, false);
+            axisMapping.positivePressed = set(axisMapping.positivePressed, controllerSlot, false);
         }
+        for (int i = repeatCount - 1; i >= 0; i--)
+            if (repeatControllers[i] == controller)
+                removeRepeat(i);
 
-        return true;
+        super.disconnected(controller);
     }
 
     @Override
     public boolean configuredButtonDown(Controller controller, int buttonId) {
-        if (targetInput == null || !buttonMappings.containsKey(buttonId))
+        if (targetInput == null)
             return false;
 
-        return sendKeyDownToTarget(buttonMappings.get(buttonId), controller);
+        int keyCode = buttonMappings.get(buttonId, NO_KEY);
+        if (keyCode == NO_KEY)
+            return keyUnmapped();
+
+        return keyChanged(keyCode, controller, true, repeatButtonKeys);
     }
 
     @Override
     public boolean configuredButtonUp(Controller controller, int buttonId) {
-        if (targetInput == null || !buttonMappings.containsKey(buttonId))
+        if (targetInput == null)
             return false;
 
-        return sendKeyUpToTarget(buttonMappings.get(buttonId), controller);
+        int keyCode = buttonMappings.get(buttonId, NO_KEY);
+        if (keyCode == NO_KEY)
+            return keyUnmapped();
+
+        return keyChanged(keyCode, controller, false, repeatButtonKeys);
     }
 
     protected boolean sendKeyDownToTarget(int keycode, Controller inputSourceController) {
@@ -137,31 +350,8 @@ public class ControllerToInputAdapter extends MappedControllerAdapter {
         public int keyCodeNegative;
         public int keyCodePositive;
 
-        private Array<Controller> positivePressed = new Array<>(false,2);
-        private Array<Controller> negativePressed = new Array<>(false,2);
-
-        public boolean setNegativeKeyPressed(Controller controller, boolean negativePressed) {
-            if (negativePressed && !this.negativePressed.contains(controller, true)) {
-                this.negativePressed.add(controller);
-                return true;
-            } else if (!negativePressed && this.negativePressed.contains(controller, true)) {
-                this.negativePressed.removeValue(controller, true);
-                return true;
-            }
-
-            return false;
-        }
-
-        public boolean setPositiveKeyPressed(Controller controller, boolean positivePressed) {
-            if (positivePressed && !this.positivePressed.contains(controller, true)) {
-                this.positivePressed.add(controller);
-                return true;
-            } else if (!positivePressed && this.positivePressed.contains(controller, true)) {
-                this.positivePressed.removeValue(controller, true);
-                return true;
-            }
-
-            return false;
-        }
+        // bit is set for controller slots with the key pressed
+        private long[] positivePressed = new long[1];
+        private long[] negativePressed = new long[1];
     }
 }
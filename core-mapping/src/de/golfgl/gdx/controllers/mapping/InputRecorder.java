@@ -0,0 +1,211 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Records configured input events to a compact, append-only binary log that can be played back with
+ * {@link InputReplayer}.
+ * <p>
+ * Attach it to a {@link MappedControllerAdapter} with {@link MappedControllerAdapter#setInputRecorder(InputRecorder)}
+ * or to a {@link MappedController} with {@link MappedController#setInputRecorder(InputRecorder)}. Events are buffered
+ * and written to the channel when the buffer is full, on {@link #flush()} and on {@link #close()}.
+ * <p>
+ * Recording is not synchronized: an instance must only be used by one thread. An adapter records on the thread
+ * delivering controller events, a {@link MappedController} on the thread calling {@link MappedController#poll()}.
+ * If these differ, use one recorder for each.
+ * <p>
+ * Log format (little endian): header int {@link #MAGIC}, byte {@link #VERSION}. Then records starting with a type
+ * byte. {@link #RECORD_CONTROLLER}: byte controller slot, short name length, name as UTF-8 bytes. Events: byte
+ * controller slot, int configured id, float value, int microseconds since previous event.
+ */
+public class InputRecorder {
+    public static final int MAGIC = 0x52554347;
+    public static final byte VERSION = 1;
+    public static final byte RECORD_BUTTON_DOWN = ConfiguredEventQueue.EVENT_BUTTON_DOWN;
+    public static final byte RECORD_BUTTON_UP = ConfiguredEventQueue.EVENT_BUTTON_UP;
+    public static final byte RECORD_AXIS_MOVED = ConfiguredEventQueue.EVENT_AXIS_MOVED;
+    public static final byte RECORD_CONTROLLER = 10;
+    /**
+     * maximum number of controllers recorded at the same time. Slots of disconnected controllers are reused
+     */
+    public static final int MAX_CONTROLLERS = 127;
+    static final int EVENT_RECORD_LENGTH = 14;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final Controller[] controllers = new Controller[MAX_CONTROLLERS];
+    // recorded name of each slot, kept after the controller disconnected
+    private final String[] names = new String[MAX_CONTROLLERS];
+    private int controllerCount;
+    private long lastEventTime = -1;
+    private long eventCount;
+
+    /**
+     * @param channel channel to write to, is closed with {@link #close()}
+     */
+    public InputRecorder(WritableByteChannel channel) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+    }
+
+    /**
+     * @param file file to write the log to, an existing file is overwritten
+     */
+    public InputRecorder(File file) throws IOException {
+        this(new FileOutputStream(file).getChannel());
+    }
+
+    /**
+     * @return number of events recorded so far
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void recordButtonDown(Controller controller, int configuredId) {
+        record(RECORD_BUTTON_DOWN, controller, configuredId, 0);
+    }
+
+    public void recordButtonUp(Controller controller, int configuredId) {
+        record(RECORD_BUTTON_UP, controller, configuredId, 0);
+    }
+
+    public void recordAxisMoved(Controller controller, int configuredId, float value) {
+        record(RECORD_AXIS_MOVED, controller, configuredId, value);
+    }
+
+    /**
+     * records an event
+     *
+     * @param type one of the RECORD_BUTTON_DOWN, RECORD_BUTTON_UP, RECORD_AXIS_MOVED constants
+     */
+    public void record(byte type, Controller controller, int configuredId, float value) {
+        int slot = getControllerSlot(controller);
+
+        long now = TimeUtils.nanoTime();
+        long micros = (lastEventTime >= 0 ? (now - lastEventTime) / 1000 : 0);
+        lastEventTime = now;
+
+        ensureSpace(EVENT_RECORD_LENGTH);
+        buffer.put(type);
+        buffer.put((byte) slot);
+        buffer.putInt(configuredId);
+        buffer.putFloat(value);
+        buffer.putInt((int) Math.min(micros, Integer.MAX_VALUE));
+        eventCount++;
+    }
+
+    /**
+     * frees the slot of a disconnected controller, so the log does not run out of slots when controllers reconnect.
+     * {@link MappedControllerAdapter} calls this for its recorder. Slots of controllers reporting
+     * {@link Controller#isConnected()} false are also freed when all slots are taken.
+     */
+    public void disconnected(Controller controller) {
+        for (int i = 0; i < controllerCount; i++)
+            if (controllers[i] == controller)
+                controllers[i] = null;
+    }
+
+    private int getControllerSlot(Controller controller) {
+        for (int i = 0; i < controllerCount; i++)
+            if (controllers[i] == controller)
+                return i;
+
+        String controllerName = controller.getName();
+        int slot = findFreeSlot(controllerName);
+
+        if (slot < 0) {
+            for (int i = 0; i < controllerCount; i++)
+                if (!controllers[i].isConnected())
+                    controllers[i] = null;
+
+            slot = findFreeSlot(controllerName);
+        }
+
+        if (slot < 0)
+            throw new GdxRuntimeException("Input recording supports at most " + MAX_CONTROLLERS
+                    + " connected controllers");
+
+        if (slot == controllerCount)
+            controllerCount++;
+        controllers[slot] = controller;
+        names[slot] = controllerName;
+
+        byte[] name;
+        try {
+            name = controllerName.getBytes("UTF-8");
+        } catch (IOException e) {
+            throw new GdxRuntimeException(e);
+        }
+        int nameLength = Math.min(name.length, Short.MAX_VALUE);
+        ensureSpace(4 + nameLength);
+        buffer.put(RECORD_CONTROLLER);
+        buffer.put((byte) slot);
+        buffer.putShort((short) nameLength);
+        buffer.put(name, 0, nameLength);
+
+        return slot;
+    }
+
+    /**
+     * @return a free slot, preferably one last used by a controller with the same name, or -1 if all are taken
+     */
+    private int findFreeSlot(String name) {
+        int freeSlot = -1;
+        for (int i = 0; i < controllerCount; i++)
+            if (controllers[i] == null) {
+                if (name.equals(names[i]))
+                    return i;
+                if (freeSlot < 0)
+                    freeSlot = i;
+            }
+
+        if (freeSlot < 0 && controllerCount < MAX_CONTROLLERS)
+            freeSlot = controllerCount;
+
+        return freeSlot;
+    }
+
+    private void ensureSpace(int bytes) {
+        if (buffer.remaining() < bytes)
+            flush();
+    }
+
+    /**
+     * writes all buffered events to the channel
+     */
+    public void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not write input recording", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * writes all buffered events and closes the channel
+     */
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not close input recording", e);
+        }
+    }
+}
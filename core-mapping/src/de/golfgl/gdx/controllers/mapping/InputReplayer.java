@@ -0,0 +1,330 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.controllers.ControllerListener;
+import com.badlogic.gdx.controllers.ControllerMapping;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Plays back a log written by {@link InputRecorder} to a {@link MappedControllerAdapter} (or its subclass
+ * {@link ControllerToInputAdapter}). No physical controller is needed: the recorded controllers are represented by
+ * {@link ReplayedController} instances with the recorded names. There is one instance per recorded controller slot,
+ * kept over {@link #rewind()}. When the recording assigns a slot to a controller with another name, the former
+ * instance is reported as disconnected to the target.
+ * <p>
+ * Replayed events take the same way through the adapter as events of a controller: player slots, the event queue,
+ * axis filters, the input recorder and metrics apply. The recorded values were already processed, so axis
+ * processors and digital tresholds are not applied again.
+ * <p>
+ * Call {@link #update(float)} every frame to replay in real time, or {@link #replayAll()} to replay the whole log as
+ * fast as possible.
+ */
+public class InputReplayer {
+    private final ByteBuffer data;
+    private final int startPosition;
+    private final ReplayedController[] controllers = new ReplayedController[InputRecorder.MAX_CONTROLLERS];
+    private MappedControllerAdapter target;
+    private long elapsedMicros;
+    private long nextEventMicros;
+    private boolean nextEventRead;
+    private long replayedCount;
+
+    /**
+     * @param data log as written by {@link InputRecorder}, read from its current position
+     */
+    public InputReplayer(ByteBuffer data, MappedControllerAdapter target) {
+        this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+        this.target = target;
+
+        if (data.remaining() < 5 || data.getInt() != InputRecorder.MAGIC)
+            throw new GdxRuntimeException("Not an input recording");
+        byte version = data.get();
+        if (version != InputRecorder.VERSION)
+            throw new GdxRuntimeException("Unsupported input recording version " + version);
+
+        startPosition = data.position();
+    }
+
+    /**
+     * @param file file written by {@link InputRecorder}, memory mapped for reading
+     */
+    public InputReplayer(File file, MappedControllerAdapter target) throws IOException {
+        this(mapFile(file), target);
+    }
+
+    private static ByteBuffer mapFile(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public MappedControllerAdapter getTarget() {
+        return target;
+    }
+
+    public void setTarget(MappedControllerAdapter target) {
+        this.target = target;
+    }
+
+    /**
+     * @return the controller replaying the given slot of the recording, or null if it was not read yet
+     */
+    public ReplayedController getController(int slot) {
+        return controllers[slot];
+    }
+
+    /**
+     * @return number of events replayed so far
+     */
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * @return true if all events were replayed
+     */
+    public boolean isFinished() {
+        return !nextEventRead && !data.hasRemaining();
+    }
+
+    /**
+     * restarts playback from the beginning of the log
+     */
+    public void rewind() {
+        data.position(startPosition);
+        elapsedMicros = 0;
+        nextEventMicros = 0;
+        nextEventRead = false;
+        replayedCount = 0;
+    }
+
+    /**
+     * replays all events recorded within the given time since the last call
+     *
+     * @param delta time in seconds
+     * @return number of events replayed
+     */
+    public int update(float delta) {
+        elapsedMicros += (long) (delta * 1000000);
+        return replay(false);
+    }
+
+    /**
+     * replays all remaining events without delay
+     *
+     * @return number of events replayed
+     */
+    public int replayAll() {
+        return replay(true);
+    }
+
+    private int replay(boolean all) {
+        int count = 0;
+
+        while (readNextEvent()) {
+            if (!all && nextEventMicros > elapsedMicros)
+                break;
+
+            if (all)
+                elapsedMicros = Math.max(elapsedMicros, nextEventMicros);
+
+            byte type = data.get();
+            int slot = data.get();
+            int configuredId = data.getInt();
+            float value = data.getFloat();
+            data.getInt();
+            nextEventRead = false;
+
+            ReplayedController controller = (slot >= 0 && slot < controllers.length ? controllers[slot] : null);
+            if (controller == null)
+                throw new GdxRuntimeException("Input recording refers to unknown controller " + slot);
+
+            switch (type) {
+                case InputRecorder.RECORD_BUTTON_DOWN:
+                    target.replayButton(controller, configuredId, true);
+                    break;
+                case InputRecorder.RECORD_BUTTON_UP:
+                    target.replayButton(controller, configuredId, false);
+                    break;
+                default:
+                    target.replayAxisMoved(controller, configuredId, value);
+            }
+
+            count++;
+            replayedCount++;
+        }
+
+        return count;
+    }
+
+    /**
+     * reads controller records and the timestamp of the next event without consuming it
+     *
+     * @return false if there are no more events
+     */
+    private boolean readNextEvent() {
+        if (nextEventRead)
+            return true;
+
+        while (data.hasRemaining()) {
+            byte type = data.get(data.position());
+
+            if (type == InputRecorder.RECORD_CONTROLLER) {
+                if (data.remaining() < 4)
+                    throw new GdxRuntimeException("Input recording is truncated");
+                data.get();
+                int slot = data.get();
+                int nameLength = data.getShort();
+                if (slot < 0 || slot >= controllers.length || nameLength < 0)
+                    throw new GdxRuntimeException("Input recording has an invalid controller record");
+                if (data.remaining() < nameLength)
+                    throw new GdxRuntimeException("Input recording is truncated");
+                byte[] nameBytes = new byte[nameLength];
+                data.get(nameBytes);
+                String name;
+                try {
+                    name = new String(nameBytes, "UTF-8");
+                } catch (IOException e) {
+                    throw new GdxRuntimeException(e);
+                }
+
+                ReplayedController controller = controllers[slot];
+                if (controller == null || !controller.getName().equals(name)) {
+                    if (controller != null)
+                        target.disconnected(controller);
+                    controllers[slot] = new ReplayedController(name, slot);
+                }
+            } else {
+                if (data.remaining() < InputRecorder.EVENT_RECORD_LENGTH)
+                    throw new GdxRuntimeException("Input recording is truncated");
+                // time is stored at the end of the event record
+                nextEventMicros += data.getInt(data.position() + InputRecorder.EVENT_RECORD_LENGTH - 4);
+                nextEventRead = true;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Stands in for a recorded controller during playback. It reports no physical input.
+     */
+    public static class ReplayedController implements Controller {
+        private final String name;
+        private final int slot;
+
+        public ReplayedController(String name, int slot) {
+            this.name = name;
+            this.slot = slot;
+        }
+
+        /**
+         * @return slot of the controller within the recording
+         */
+        public int getSlot() {
+            return slot;
+        }
+
+        @Override
+        public boolean getButton(int buttonCode) {
+            return false;
+        }
+
+        @Override
+        public float getAxis(int axisCode) {
+            return 0;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getUniqueId() {
+            return "replay-" + slot;
+        }
+
+        @Override
+        public int getMinButtonIndex() {
+            return 0;
+        }
+
+        @Override
+        public int getMaxButtonIndex() {
+            return -1;
+        }
+
+        @Override
+        public int getAxisCount() {
+            return 0;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean canVibrate() {
+            return false;
+        }
+
+        @Override
+        public boolean isVibrating() {
+            return false;
+        }
+
+        @Override
+        public void startVibration(int duration, float strength) {
+
+        }
+
+        @Override
+        public void cancelVibration() {
+
+        }
+
+        @Override
+        public boolean supportsPlayerIndex() {
+            return false;
+        }
+
+        @Override
+        public int getPlayerIndex() {
+            return PLAYER_IDX_UNSET;
+        }
+
+        @Override
+        public void setPlayerIndex(int index) {
+
+        }
+
+        @Override
+        public ControllerMapping getMapping() {
+            return null;
+        }
+
+        @Override
+        public void addListener(ControllerListener listener) {
+
+        }
+
+        @Override
+        public void removeListener(ControllerListener listener) {
+
+        }
+    }
+}
@@ -2,6 +2,7 @@ package de.golfgl.gdx.controllers.mapping;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.utils.TimeUtils;
 
 /**
  * Wraps libGDX controller and respects the mapping you instantiate it with.
@@ -12,6 +13,10 @@ import com.badlogic.gdx.controllers.Controller;
  * mappedController.isButtonPressed(BUTTON_JUMP);
  * mappedController.getAxisValue(AXIS_HORIZONTAL);
  * </pre>
+ * If you call {@link #poll()} once per frame, all mapped inputs are read at that moment and queries return the
+ * values of this snapshot. This gives consistent values during a frame and enables
+ * {@link #isButtonJustPressed(int)} and {@link #isButtonJustReleased(int)}.
+ * <p>
  * Created by Benjamin Schulte on 05.11.2017.
  */
 
@@ -20,15 +25,50 @@ public class MappedController {
     private ControllerMappings mappings;
     private ControllerMappings.MappedInputs controllerMapping;
     private float analogToDigitalTreshold;
+    private float analogToDigitalEnterTreshold;
+    // last digital axis values by slot for the hysteresis when not polling
+    private float[] digitalAxisStates;
+    // snapshot state by slot, only used after poll() was called
+    private boolean polled;
+    private boolean[] buttonStates;
+    private boolean[] lastButtonStates;
+    private float[] axisStates;
+    private float[] lastAxisStates;
+    private InputRecorder inputRecorder;
+    private MappingMetrics metrics;
 
     public MappedController(Controller controller, ControllerMappings mappings) {
         this.controller = controller;
         this.mappings = mappings;
         this.analogToDigitalTreshold = mappings.analogToDigitalTreshold;
+        this.analogToDigitalEnterTreshold = mappings.analogToDigitalEnterTreshold;
 
         refreshMappingCache();
     }
 
+    public InputRecorder getInputRecorder() {
+        return inputRecorder;
+    }
+
+    /**
+     * @param inputRecorder if set, changes of mapped inputs found by {@link #poll()} are recorded as events. Set to
+     *                      null to stop recording
+     */
+    public void setInputRecorder(InputRecorder inputRecorder) {
+        this.inputRecorder = inputRecorder;
+    }
+
+    public MappingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics if set, calls of {@link #poll()} and their duration are counted. Set to null to stop counting
+     */
+    public void setMetrics(MappingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * refreshes the cached mapping from the ControllerMappings. Call this after you resetted mappings or filled from
      * json
@@ -53,24 +93,136 @@ public class MappedController {
         if (controllerMapping == null)
             return false;
 
-        ControllerMappings.MappedInput mappedInput = controllerMapping.getMappedInput(configuredId);
+        CompiledMapping compiledMapping = controllerMapping.getCompiledMapping();
+        int slot = compiledMapping.getSlot(configuredId);
 
-        // not configured or not recorded
-        if (mappedInput == null)
+        // not configured
+        if (slot < 0)
             return false;
 
+        if (polled)
+            return buttonStates[slot];
+
         // A virtual button is always a real button
-        int buttonIndex = mappedInput.getButtonIndex();
-        if (buttonIndex >= 0)
-            return controller.getButton(buttonIndex);
-        else
-            return false;
+        return compiledMapping.isButtonPressed(controller, slot);
+    }
+
+    /**
+     * @return true if the mapped button is pressed in the current snapshot, but was not pressed in the snapshot
+     * before. Needs {@link #poll()} to be called every frame
+     */
+    public boolean isButtonJustPressed(int configuredId) {
+        int slot = getPolledSlot(configuredId);
+        return slot >= 0 && buttonStates[slot] && !lastButtonStates[slot];
+    }
+
+    /**
+     * @return true if the mapped button is not pressed in the current snapshot, but was pressed in the snapshot
+     * before. Needs {@link #poll()} to be called every frame
+     */
+    public boolean isButtonJustReleased(int configuredId) {
+        int slot = getPolledSlot(configuredId);
+        return slot >= 0 && !buttonStates[slot] && lastButtonStates[slot];
+    }
+
+    /**
+     * @return value of the virtual axis in the snapshot before the current one. Needs {@link #poll()} to be
+     * called every frame
+     */
+    public float getPreviousConfiguredAxisValue(int configuredId) {
+        int slot = getPolledSlot(configuredId);
+        return slot >= 0 ? lastAxisStates[slot] : 0;
+    }
+
+    private int getPolledSlot(int configuredId) {
+        if (!polled || controllerMapping == null)
+            return -1;
+
+        return controllerMapping.getCompiledMapping().getSlot(configuredId);
+    }
+
+    /**
+     * reads all mapped inputs from the controller. Call this once per frame, afterwards all queries on this object
+     * return the values read here until the next call.
+     */
+    public void poll() {
+        if (metrics == null) {
+            doPoll();
+            return;
+        }
+
+        long start = TimeUtils.nanoTime();
+        doPoll();
+        metrics.recordPoll(TimeUtils.nanoTime() - start);
+    }
+
+    private void doPoll() {
+        CompiledMapping compiledMapping = (controllerMapping != null ? controllerMapping.getCompiledMapping() : null);
+
+        if (compiledMapping == null) {
+            if (metrics != null)
+                metrics.count(MappingMetrics.EVENTS_NO_MAPPING);
+            return;
+        }
+
+        int slotCount = compiledMapping.getSlotCount();
+        if (buttonStates == null || buttonStates.length != slotCount) {
+            buttonStates = new boolean[slotCount];
+            lastButtonStates = new boolean[slotCount];
+            axisStates = new float[slotCount];
+            lastAxisStates = new float[slotCount];
+        }
+
+        // swap current and last state
+        boolean[] swapButtons = lastButtonStates;
+        lastButtonStates = buttonStates;
+        buttonStates = swapButtons;
+        float[] swapAxis = lastAxisStates;
+        lastAxisStates = axisStates;
+        axisStates = swapAxis;
+
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!compiledMapping.isMapped(slot)) {
+                buttonStates[slot] = false;
+                axisStates[slot] = 0;
+            } else if (compiledMapping.getType(slot) == CompiledMapping.TYPE_BUTTON) {
+                buttonStates[slot] = compiledMapping.isButtonPressed(controller, slot);
+                axisStates[slot] = 0;
+            } else {
+                float value = compiledMapping.getAxisValue(controller, slot, analogToDigitalTreshold,
+                        analogToDigitalEnterTreshold, lastAxisStates[slot]);
+                AxisProcessor axisProcessor = compiledMapping.getAxisProcessor(slot);
+                // digital axis are not processed, like for events
+                if (axisProcessor != null && compiledMapping.getType(slot) != CompiledMapping.TYPE_AXIS_DIGITAL)
+                    value = axisProcessor.smooth(lastAxisStates[slot], value);
+                axisStates[slot] = value;
+                // an axis mapped to buttons reports 1 when its first button is pressed
+                buttonStates[slot] = value > 0 && compiledMapping.getButtonIndex(slot) >= 0;
+            }
+        }
+
+        if (inputRecorder != null && polled)
+            recordChanges(compiledMapping);
+
+        polled = true;
+    }
+
+    private void recordChanges(CompiledMapping compiledMapping) {
+        for (int slot = 0; slot < buttonStates.length; slot++) {
+            if (compiledMapping.getType(slot) == CompiledMapping.TYPE_BUTTON) {
+                if (buttonStates[slot] != lastButtonStates[slot])
+                    inputRecorder.record(buttonStates[slot] ? InputRecorder.RECORD_BUTTON_DOWN
+                            : InputRecorder.RECORD_BUTTON_UP, controller, compiledMapping.getConfiguredId(slot), 0);
+            } else if (axisStates[slot] != lastAxisStates[slot])
+                inputRecorder.recordAxisMoved(controller, compiledMapping.getConfiguredId(slot), axisStates[slot]);
+        }
     }
 
     /**
      * returns current value of virtual axis
      * <p>
-     * It is not checked if your configuredId is an axis.
+     * It is not checked if your configuredId is an axis. Smoothing of an {@link AxisProcessor} is only applied if
+     * {@link #poll()} is used.
      *
      * @param configuredId
      * @return current value
@@ -79,38 +231,25 @@ public class MappedController {
         if (controllerMapping == null)
             return 0;
 
-        ControllerMappings.MappedInput mappedInput = controllerMapping.getMappedInput(configuredId);
+        CompiledMapping compiledMapping = controllerMapping.getCompiledMapping();
+        int slot = compiledMapping.getSlot(configuredId);
 
-        // not configured or not recorded
-        if (mappedInput == null)
+        // not configured
+        if (slot < 0)
             return 0;
 
-        ConfiguredInput.Type configuredInputType = mappedInput.getConfiguredInputType();
-
-        // first check if a real axis is mapped
-        int axisId = mappedInput.getAxisIndex();
-
-        if (axisId >= 0) {
-            float value = controller.getAxis(axisId);
-            if (configuredInputType == ConfiguredInput.Type.axisDigital)
-                return (Math.abs(value) < analogToDigitalTreshold ? 0 : 1f * Math.signum(value));
-            else
-                return value;
-        }
-
-        // axisAnalog only accepts real axis, so if not found don't look any further
-        if (configuredInputType == ConfiguredInput.Type.axisAnalog)
-            return 0;
+        if (polled)
+            return axisStates[slot];
 
-        // if not a real axis, it could be a set of buttons or pov
-        int buttonIndex = mappedInput.getButtonIndex();
-        if (buttonIndex >= 0 && controller.getButton(buttonIndex))
-            return 1f;
-        int reverseButtonIndex = mappedInput.getReverseButtonIndex();
-        if (reverseButtonIndex >= 0 && controller.getButton(reverseButtonIndex))
-            return -1f;
+        if (compiledMapping.getType(slot) != CompiledMapping.TYPE_AXIS_DIGITAL)
+            return compiledMapping.getAxisValue(controller, slot, analogToDigitalTreshold);
 
-        return 0;
+        if (digitalAxisStates == null)
+            digitalAxisStates = new float[compiledMapping.getSlotCount()];
+        float value = compiledMapping.getAxisValue(controller, slot, analogToDigitalTreshold,
+                analogToDigitalEnterTreshold, digitalAxisStates[slot]);
+        digitalAxisStates[slot] = value;
+        return value;
     }
 
     public String getControllerName() {
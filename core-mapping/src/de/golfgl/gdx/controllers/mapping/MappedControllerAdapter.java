@@ -3,6 +3,7 @@ package de.golfgl.gdx.controllers.mapping;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.controllers.Controller;
 import com.badlogic.gdx.controllers.ControllerAdapter;
+import com.badlogic.gdx.utils.TimeUtils;
 
 /**
  * This ControllerAdapter respects the mapping you instantiate it with.
@@ -15,15 +16,189 @@ import com.badlogic.gdx.controllers.ControllerAdapter;
  *         //override configuredXXX() methods here...
  *     });
  * </pre>
+ * If your handlers should not run while the backend delivers events, use {@link #setEventQueue(ConfiguredEventQueue)}
+ * and call {@link #drainEventQueue()} at a defined point of your game loop.
+ * <p>
+ * For several local players, use {@link #setPlayerSlots(PlayerSlots)} and override the playerXXX() methods to
+ * receive events by player slot.
+ * <p>
  * Created by Benjamin Schulte on 05.11.2017.
  */
 public class MappedControllerAdapter extends ControllerAdapter {
     ControllerMappings mappings;
     private float analogToDigitalTreshold;
+    private float analogToDigitalEnterTreshold;
+    // resolved mappings per controller instance, slots are reused after a controller disconnected
+    private ControllerState[] controllerStates = new ControllerState[4];
+    private int controllerStateCount;
+    private ControllerState lastControllerState;
+    private float axisDeadzone;
+    private float axisChangeEpsilon;
+    private boolean coalesceAxisEvents;
+    private ConfiguredEventQueue eventQueue;
+    private InputRecorder inputRecorder;
+    private MappingMetrics metrics;
+    private PlayerSlots playerSlots;
+    // controller of the event reported to a playerXXX() method, for their default implementations
+    private Controller reportedController;
+    // runs on the draining thread, so it only uses what the event carries and never the controller states
+    private final ConfiguredEventQueue.EventHandler queueHandler = new ConfiguredEventQueue.EventHandler() {
+        @Override
+        public void handleEvent(byte type, Controller controller, int player, int configuredId, float value,
+                                long timestamp) {
+            switch (type) {
+                case ConfiguredEventQueue.EVENT_BUTTON_DOWN:
+                    reportButton(controller, player, configuredId, true);
+                    break;
+                case ConfiguredEventQueue.EVENT_BUTTON_UP:
+                    reportButton(controller, player, configuredId, false);
+                    break;
+                default:
+                    reportAxisMoved(controller, player, configuredId, value);
+            }
+        }
+    };
 
     public MappedControllerAdapter(ControllerMappings mappings) {
         this.mappings = mappings;
         this.analogToDigitalTreshold = mappings.analogToDigitalTreshold;
+        this.analogToDigitalEnterTreshold = mappings.analogToDigitalEnterTreshold;
+    }
+
+    public float getAxisDeadzone() {
+        return axisDeadzone;
+    }
+
+    /**
+     * @param axisDeadzone analog axis values with an absolute value below are reported as 0. Default is 0, so
+     *                     every value is passed
+     */
+    public MappedControllerAdapter setAxisDeadzone(float axisDeadzone) {
+        this.axisDeadzone = axisDeadzone;
+        return this;
+    }
+
+    public float getAxisChangeEpsilon() {
+        return axisChangeEpsilon;
+    }
+
+    /**
+     * @param axisChangeEpsilon analog axis changes smaller than this value compared to the last reported value are
+     *                          not reported. Returning to 0 and reaching -1 or 1 is always reported. Default is 0,
+     *                          so every change is passed
+     */
+    public MappedControllerAdapter setAxisChangeEpsilon(float axisChangeEpsilon) {
+        this.axisChangeEpsilon = axisChangeEpsilon;
+        return this;
+    }
+
+    public boolean isCoalesceAxisEvents() {
+        return coalesceAxisEvents;
+    }
+
+    /**
+     * @param coalesceAxisEvents activate if axis events should not be reported immediately, but only the latest value
+     *                           per controller and configured axis when {@link #flush()} is called or before a
+     *                           button event of the same controller is reported. Default is false
+     */
+    public MappedControllerAdapter setCoalesceAxisEvents(boolean coalesceAxisEvents) {
+        if (this.coalesceAxisEvents && !coalesceAxisEvents)
+            flush();
+
+        this.coalesceAxisEvents = coalesceAxisEvents;
+        return this;
+    }
+
+    public ConfiguredEventQueue getEventQueue() {
+        return eventQueue;
+    }
+
+    /**
+     * @param eventQueue if set, configured events are not reported immediately but written to the queue. Call
+     *                   {@link #drainEventQueue()} to report them. Set to null to report immediately again.
+     */
+    public MappedControllerAdapter setEventQueue(ConfiguredEventQueue eventQueue) {
+        this.eventQueue = eventQueue;
+        return this;
+    }
+
+    public InputRecorder getInputRecorder() {
+        return inputRecorder;
+    }
+
+    /**
+     * @param inputRecorder if set, all configured events are recorded. Set to null to stop recording
+     */
+    public MappedControllerAdapter setInputRecorder(InputRecorder inputRecorder) {
+        this.inputRecorder = inputRecorder;
+        return this;
+    }
+
+    public MappingMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics if set, events and dispatch latencies are counted. Set to null to stop counting
+     */
+    public MappedControllerAdapter setMetrics(MappingMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public PlayerSlots getPlayerSlots() {
+        return playerSlots;
+    }
+
+    /**
+     * @param playerSlots if set, only events of controllers with a player slot are reported, by the playerXXX()
+     *                    methods. Connects and disconnects are passed to it, and with
+     *                    {@link PlayerSlots.JoinPolicy#firstPress} a button press joins the controller. Set to null
+     *                    to report events of all controllers again
+     */
+    public MappedControllerAdapter setPlayerSlots(PlayerSlots playerSlots) {
+        this.playerSlots = playerSlots;
+        for (int i = 0; i < controllerStateCount; i++)
+            controllerStates[i].playerSlotsVersion = -1;
+        return this;
+    }
+
+    /**
+     * reports all events written to the event queue since the last call to the configuredXXX() methods. Call this
+     * from your game thread once per frame. Events are reported with the controller and player slot they were given
+     * with, even if the controller disconnected in the meantime and another one took its place.
+     *
+     * @return number of events taken from the queue
+     */
+    public int drainEventQueue() {
+        if (eventQueue == null)
+            return 0;
+
+        return eventQueue.drain(queueHandler);
+    }
+
+    /**
+     * reports all axis events held back since the last call. Call this once per frame when
+     * {@link #setCoalesceAxisEvents(boolean)} is activated, otherwise it does nothing.
+     */
+    public void flush() {
+        for (int i = 0; i < controllerStateCount; i++)
+            flush(controllerStates[i]);
+    }
+
+    /**
+     * reports the axis events of the controller held back since the last call
+     */
+    private void flush(ControllerState state) {
+        if (!state.hasPendingAxis)
+            return;
+
+        state.hasPendingAxis = false;
+        for (int slot = 0; slot < state.axisPending.length; slot++)
+            if (state.axisPending[slot]) {
+                state.axisPending[slot] = false;
+                dispatchAxisMoved(state, mappings.getConfiguredId(slot), state.axisValues[slot]);
+            }
     }
 
     /**
@@ -48,36 +223,180 @@ public class MappedControllerAdapter extends ControllerAdapter {
         return false;
     }
 
+    /**
+     * Called instead of {@link #configuredButtonDown(Controller, int)} if player slots are set. Calls it with the
+     * controller giving the event if not overridden.
+     *
+     * @param player   the player slot of the controller giving this event
+     * @param buttonId your configured button id
+     * @return whether you handled the event
+     */
+    public boolean playerButtonDown(int player, int buttonId) {
+        return configuredButtonDown(getReportedController(player), buttonId);
+    }
+
+    /**
+     * Called instead of {@link #configuredButtonUp(Controller, int)} if player slots are set. Calls it with the
+     * controller giving the event if not overridden.
+     *
+     * @param player   the player slot of the controller giving this event
+     * @param buttonId your configured button id
+     * @return whether you handled the event
+     */
+    public boolean playerButtonUp(int player, int buttonId) {
+        return configuredButtonUp(getReportedController(player), buttonId);
+    }
+
+    /**
+     * Called instead of {@link #configuredAxisMoved(Controller, int, float)} if player slots are set. Calls it with
+     * the controller giving the event if not overridden.
+     *
+     * @param player the player slot of the controller giving this event
+     * @param axisId your configured axis id
+     * @return whether you handled the event
+     */
+    public boolean playerAxisMoved(int player, int axisId, float value) {
+        return configuredAxisMoved(getReportedController(player), axisId, value);
+    }
+
+    /**
+     * @return the controller of the event reported by a playerXXX() method, or the player's controller if called
+     * from elsewhere
+     */
+    private Controller getReportedController(int player) {
+        return reportedController != null ? reportedController : playerSlots.getController(player);
+    }
+
+    /**
+     * @return the compiled mapping for the given controller, or null if there is none
+     */
+    protected CompiledMapping getCompiledMapping(Controller controller) {
+        return getCompiledMapping(getControllerState(controller));
+    }
+
+    private CompiledMapping getCompiledMapping(ControllerState state) {
+        int generation = mappings.getMappingGeneration();
+
+        if (state.generation != generation || !state.resolved) {
+            ControllerMappings.MappedInputs mapping = mappings.getControllerMapping(state.controller);
+            state.mapping = (mapping != null ? mapping.getCompiledMapping() : null);
+            // resolving may have added a default mapping, so fetch generation again
+            state.generation = mappings.getMappingGeneration();
+            state.resolved = true;
+        }
+
+        return state.mapping;
+    }
+
+    /**
+     * @return a dense index for the controller instance, starting with 0. It is reused for another controller after
+     * the controller disconnected
+     */
+    protected int getControllerSlot(Controller controller) {
+        return getControllerState(controller).index;
+    }
+
+    /**
+     * @return the player slot of the state's controller, cached until the player slots change
+     */
+    private int getPlayerSlot(ControllerState state) {
+        int version = playerSlots.getVersion();
+        if (state.playerSlotsVersion != version) {
+            state.playerSlot = playerSlots.getSlot(state.controller);
+            state.playerSlotsVersion = version;
+        }
+        return state.playerSlot;
+    }
+
+    /**
+     * @return the cached state for the given controller instance, created on first access
+     */
+    private ControllerState getControllerState(Controller controller) {
+        ControllerState state = lastControllerState;
+        if (state != null && state.controller == controller)
+            return state;
+
+        int freeIndex = -1;
+        for (int i = 0; i < controllerStateCount; i++) {
+            state = controllerStates[i];
+            if (state.controller == controller) {
+                lastControllerState = state;
+                return state;
+            } else if (state.controller == null && freeIndex < 0)
+                freeIndex = i;
+        }
+
+        if (freeIndex < 0) {
+            if (controllerStateCount == controllerStates.length) {
+                ControllerState[] newStates = new ControllerState[controllerStates.length * 2];
+                System.arraycopy(controllerStates, 0, newStates, 0, controllerStateCount);
+                controllerStates = newStates;
+            }
+            freeIndex = controllerStateCount;
+            controllerStates[freeIndex] = new ControllerState(freeIndex);
+            controllerStateCount++;
+        }
+
+        state = controllerStates[freeIndex];
+        state.controller = controller;
+        state.resolved = false;
+        lastControllerState = state;
+        return state;
+    }
+
+    @Override
+    public void connected(Controller controller) {
+        if (playerSlots != null)
+            playerSlots.connected(controller);
+    }
+
+    @Override
+    public void disconnected(Controller controller) {
+        if (playerSlots != null)
+            playerSlots.disconnected(controller);
+        if (inputRecorder != null)
+            inputRecorder.disconnected(controller);
+
+        // free the slot, so the controller instance is not held
+        for (int i = 0; i < controllerStateCount; i++)
+            if (controllerStates[i].controller == controller)
+                controllerStates[i].reset();
+
+        if (lastControllerState != null && lastControllerState.controller == null)
+            lastControllerState = null;
+    }
+
     protected boolean buttonChange(Controller controller, int buttonIndex, boolean isDown) {
-        boolean isReverse = false;
-        ControllerMappings.MappedInputs mapping = mappings.getControllerMapping(controller);
+        ControllerState state = getControllerState(controller);
+
+        if (playerSlots != null && getPlayerSlot(state) < 0)
+            return droppedWithoutPlayer(state, isDown);
+
+        CompiledMapping mapping = getCompiledMapping(state);
 
         if (mapping == null)
-            return false;
+            return dropped(MappingMetrics.EVENTS_NO_MAPPING);
 
-        ConfiguredInput configuredInput = mapping.getConfiguredFromButton(buttonIndex);
+        int slot = mapping.getSlotForButton(buttonIndex);
 
-        if (configuredInput == null) {
-            configuredInput = mapping.getConfiguredFromReverseButton(buttonIndex);
-            isReverse = true;
-        }
+        if (slot < 0)
+            return dropped(MappingMetrics.EVENTS_UNMAPPED);
 
-        if (configuredInput == null)
-            return false;
+        int configuredId = mapping.getConfiguredId(slot);
 
-        switch (configuredInput.inputType) {
-            case button:
-                if (isDown)
-                    return configuredButtonDown(controller, configuredInput.inputId);
-                else
-                    return configuredButtonUp(controller, configuredInput.inputId);
-            case axis:
-            case axisDigital:
-                return configuredAxisMoved(controller, configuredInput.inputId, !isDown ? 0 : isReverse ? -1f : 1f);
+        switch (mapping.getType(slot)) {
+            case CompiledMapping.TYPE_BUTTON:
+                return dispatchButton(state, configuredId, isDown);
+            case CompiledMapping.TYPE_AXIS:
+                return axisChanged(state, slot, configuredId, processAxisValue(state, mapping, slot,
+                        !isDown ? 0 : mapping.isReverseButton(buttonIndex) ? -1f : 1f), false);
+            case CompiledMapping.TYPE_AXIS_DIGITAL:
+                return axisChanged(state, slot, configuredId,
+                        !isDown ? 0 : mapping.isReverseButton(buttonIndex) ? -1f : 1f, false);
             default:
                 // axis analog may not happen
                 Gdx.app.log(ControllerMappings.LOG_TAG, "Button mapped to analog axis not allowed!");
-                return false;
+                return dropped(MappingMetrics.EVENTS_WRONG_TYPE);
         }
     }
 
@@ -93,29 +412,290 @@ public class MappedControllerAdapter extends ControllerAdapter {
 
     @Override
     public boolean axisMoved(Controller controller, int axisIndex, float value) {
-        //TODO axis fires very often, so cache last controller and last two axis
+        ControllerState state = getControllerState(controller);
+
+        if (playerSlots != null && getPlayerSlot(state) < 0)
+            return dropped(MappingMetrics.EVENTS_NO_PLAYER);
 
-        ControllerMappings.MappedInputs mapping = mappings.getControllerMapping(controller);
+        CompiledMapping mapping = getCompiledMapping(state);
 
         if (mapping == null)
-            return false;
+            return dropped(MappingMetrics.EVENTS_NO_MAPPING);
 
-        ConfiguredInput configuredInput = mapping.getConfiguredFromAxis(axisIndex);
+        int slot = mapping.getSlotForAxis(axisIndex);
 
-        if (configuredInput == null)
-            return false;
+        if (slot < 0)
+            return dropped(MappingMetrics.EVENTS_UNMAPPED);
 
-        switch (configuredInput.inputType) {
-            case axis:
-            case axisAnalog:
-                return configuredAxisMoved(controller, configuredInput.inputId, value);
-            case axisDigital:
-                return configuredAxisMoved(controller, configuredInput.inputId,
-                        Math.abs(value) < analogToDigitalTreshold ? 0 : 1 * Math.signum(value));
+        int configuredId = mapping.getConfiguredId(slot);
+        value = mapping.calibrateAxisValue(axisIndex, value);
+
+        switch (mapping.getType(slot)) {
+            case CompiledMapping.TYPE_AXIS:
+            case CompiledMapping.TYPE_AXIS_ANALOG:
+                return axisChanged(state, slot, configuredId, processAxisValue(state, mapping, slot, value), true);
+            case CompiledMapping.TYPE_AXIS_DIGITAL:
+                return digitalAxisChanged(state, mapping, slot, configuredId, value);
             default:
                 // button may not happen
                 Gdx.app.log(ControllerMappings.LOG_TAG, "Axis mapped to button not allowed!");
-                return false;
+                return dropped(MappingMetrics.EVENTS_WRONG_TYPE);
+        }
+    }
+
+    /**
+     * reports a replayed button event. It takes the same way as an event of a controller: player slots, event queue,
+     * recorder and metrics apply
+     *
+     * @see InputReplayer
+     */
+    boolean replayButton(Controller controller, int configuredId, boolean isDown) {
+        ControllerState state = getControllerState(controller);
+
+        if (playerSlots != null && getPlayerSlot(state) < 0)
+            return droppedWithoutPlayer(state, isDown);
+
+        return dispatchButton(state, configuredId, isDown);
+    }
+
+    /**
+     * reports a replayed axis event. The value was processed when it was recorded, so only deadzone, change filter
+     * and coalescing are applied before it takes the way of an event of a controller
+     *
+     * @see InputReplayer
+     */
+    boolean replayAxisMoved(Controller controller, int configuredId, float value) {
+        ControllerState state = getControllerState(controller);
+
+        if (playerSlots != null && getPlayerSlot(state) < 0)
+            return dropped(MappingMetrics.EVENTS_NO_PLAYER);
+
+        int slot = mappings.getConfiguredSlot(configuredId);
+
+        if (slot < 0)
+            return dropped(MappingMetrics.EVENTS_UNMAPPED);
+
+        return axisChanged(state, slot, configuredId, value,
+                mappings.getConfiguredType(slot) != CompiledMapping.TYPE_AXIS_DIGITAL);
+    }
+
+    /**
+     * drops an event of a controller without player slot. With {@link PlayerSlots.JoinPolicy#firstPress}, a button
+     * press joins the controller and is consumed
+     */
+    private boolean droppedWithoutPlayer(ControllerState state, boolean isDown) {
+        if (isDown && playerSlots.getJoinPolicy() == PlayerSlots.JoinPolicy.firstPress
+                && playerSlots.join(state.controller) >= 0) {
+            dropped(MappingMetrics.EVENTS_NO_PLAYER);
+            return true;
+        }
+        return dropped(MappingMetrics.EVENTS_NO_PLAYER);
+    }
+
+    /**
+     * converts an analog value to a digital one with hysteresis and reports it only if the digital value changed
+     */
+    private boolean digitalAxisChanged(ControllerState state, CompiledMapping mapping, int slot, int configuredId,
+                                       float value) {
+        if (state.digitalValues == null)
+            state.digitalValues = new float[mapping.getSlotCount()];
+
+        float lastValue = state.digitalValues[slot];
+        float digitalValue = CompiledMapping.toDigital(value, lastValue,
+                mapping.getAnalogToDigitalTreshold(analogToDigitalTreshold), analogToDigitalEnterTreshold);
+
+        if (digitalValue == lastValue)
+            return dropped(MappingMetrics.EVENTS_FILTERED);
+
+        state.digitalValues[slot] = digitalValue;
+        return axisChanged(state, slot, configuredId, digitalValue, false);
+    }
+
+    /**
+     * applies the axis processor of the slot, if there is one
+     */
+    private float processAxisValue(ControllerState state, CompiledMapping mapping, int slot, float value) {
+        AxisProcessor axisProcessor = mapping.getAxisProcessor(slot);
+        if (axisProcessor == null)
+            return value;
+
+        value = axisProcessor.process(value);
+
+        if (axisProcessor.isSmoothing()) {
+            if (state.smoothedValues == null)
+                state.smoothedValues = new float[mapping.getSlotCount()];
+            value = axisProcessor.smooth(state.smoothedValues[slot], value);
+            state.smoothedValues[slot] = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * applies deadzone, change filter and coalescing before an axis event is reported
+     *
+     * @param analog true if the value comes from an analog axis, false for digital values
+     */
+    private boolean axisChanged(ControllerState state, int slot, int configuredId, float value, boolean analog) {
+        if (state.axisValues == null)
+            state.initAxisState(mappings.getConfiguredSlotCount());
+
+        if (!coalesceAxisEvents && axisDeadzone <= 0 && axisChangeEpsilon <= 0) {
+            // kept for filters set later
+            state.axisValues[slot] = value;
+            return dispatchAxisMoved(state, configuredId, value);
+        }
+
+        if (analog && Math.abs(value) < axisDeadzone)
+            value = 0;
+
+        float lastValue = state.axisValues[slot];
+        if (value == lastValue
+                || analog && value != 0 && Math.abs(value) < 1f && Math.abs(value - lastValue) < axisChangeEpsilon)
+            return dropped(MappingMetrics.EVENTS_FILTERED);
+
+        state.axisValues[slot] = value;
+
+        if (coalesceAxisEvents) {
+            state.axisPending[slot] = true;
+            state.hasPendingAxis = true;
+            return true;
+        }
+
+        return dispatchAxisMoved(state, configuredId, value);
+    }
+
+    /**
+     * @return false, after the dropped event was counted
+     */
+    private boolean dropped(int counter) {
+        if (metrics != null)
+            metrics.count(counter);
+        return false;
+    }
+
+    private boolean dispatchButton(ControllerState state, int configuredId, boolean isDown) {
+        // axis changes held back happened before this button event
+        flush(state);
+
+        if (metrics == null)
+            return doDispatchButton(state, configuredId, isDown);
+
+        long start = TimeUtils.nanoTime();
+        boolean handled = doDispatchButton(state, configuredId, isDown);
+        metrics.recordDispatch(TimeUtils.nanoTime() - start);
+        return handled;
+    }
+
+    private boolean doDispatchButton(ControllerState state, int configuredId, boolean isDown) {
+        if (inputRecorder != null)
+            inputRecorder.record(isDown ? InputRecorder.RECORD_BUTTON_DOWN : InputRecorder.RECORD_BUTTON_UP,
+                    state.controller, configuredId, 0);
+
+        int player = (playerSlots != null ? getPlayerSlot(state) : -1);
+
+        if (eventQueue != null)
+            return eventQueue.offer(isDown ? ConfiguredEventQueue.EVENT_BUTTON_DOWN : ConfiguredEventQueue.EVENT_BUTTON_UP,
+                    state.controller, player, configuredId, 0, TimeUtils.nanoTime());
+
+        return reportButton(state.controller, player, configuredId, isDown);
+    }
+
+    private boolean dispatchAxisMoved(ControllerState state, int configuredId, float value) {
+        if (metrics == null)
+            return doDispatchAxisMoved(state, configuredId, value);
+
+        long start = TimeUtils.nanoTime();
+        boolean handled = doDispatchAxisMoved(state, configuredId, value);
+        metrics.recordDispatch(TimeUtils.nanoTime() - start);
+        return handled;
+    }
+
+    private boolean doDispatchAxisMoved(ControllerState state, int configuredId, float value) {
+        if (inputRecorder != null)
+            inputRecorder.recordAxisMoved(state.controller, configuredId, value);
+
+        int player = (playerSlots != null ? getPlayerSlot(state) : -1);
+
+        if (eventQueue != null)
+            return eventQueue.offer(ConfiguredEventQueue.EVENT_AXIS_MOVED, state.controller, player, configuredId,
+                    value, TimeUtils.nanoTime());
+
+        return reportAxisMoved(state.controller, player, configuredId, value);
+    }
+
+    /**
+     * @param player player slot of the controller, or -1 if player slots are not used
+     */
+    private boolean reportButton(Controller controller, int player, int configuredId, boolean isDown) {
+        if (player >= 0) {
+            reportedController = controller;
+            boolean handled = isDown ? playerButtonDown(player, configuredId) : playerButtonUp(player, configuredId);
+            reportedController = null;
+            return handled;
+        }
+
+        if (isDown)
+            return configuredButtonDown(controller, configuredId);
+        else
+            return configuredButtonUp(controller, configuredId);
+    }
+
+    private boolean reportAxisMoved(Controller controller, int player, int configuredId, float value) {
+        if (player >= 0) {
+            reportedController = controller;
+            boolean handled = playerAxisMoved(player, configuredId, value);
+            reportedController = null;
+            return handled;
+        }
+
+        return configuredAxisMoved(controller, configuredId, value);
+    }
+
+    private static class ControllerState {
+        private final int index;
+        private Controller controller;
+        private CompiledMapping mapping;
+        private int generation;
+        private boolean resolved;
+        private int playerSlot;
+        private int playerSlotsVersion = -1;
+        // last reported or coalesced axis values by slot, only used when axis events are filtered
+        private float[] axisValues;
+        private boolean[] axisPending;
+        private boolean hasPendingAxis;
+        // last value by slot of axis with smoothing
+        private float[] smoothedValues;
+        // last value by slot of digital axis mapped to analog axis
+        private float[] digitalValues;
+
+        private ControllerState(int index) {
+            this.index = index;
+        }
+
+        private void initAxisState(int slotCount) {
+            axisValues = new float[slotCount];
+            axisPending = new boolean[slotCount];
+        }
+
+        private void reset() {
+            controller = null;
+            mapping = null;
+            resolved = false;
+            playerSlotsVersion = -1;
+            hasPendingAxis = false;
+            if (smoothedValues != null)
+                for (int i = 0; i < smoothedValues.length; i++)
+                    smoothedValues[i] = 0;
+            if (digitalValues != null)
+                for (int i = 0; i < digitalValues.length; i++)
+                    digitalValues[i] = 0;
+            if (axisValues != null) {
+                for (int i = 0; i < axisValues.length; i++) {
+                    axisValues[i] = 0;
+                    axisPending[i] = false;
+                }
+            }
         }
     }
 }
@@ -0,0 +1,255 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+
+/**
+ * Polls the mapped inputs of several controllers in one pass, for games with many local players.
+ * <p>
+ * State of all players is held in flat arrays: one float array for all axis values and one bit mask per configured
+ * button with a bit for every player. So asking if any player pressed a button is a single test.
+ * <pre>
+ * MappedControllerGroup group = new MappedControllerGroup(controllerMappings, 8);
+ * group.setController(0, controller);
+ * ...
+ * group.poll();
+ * if (group.isAnyButtonJustPressed(BUTTON_START))
+ *     ...
+ * group.getPlayer(0).getConfiguredAxisValue(AXIS_HORIZONTAL);
+ * </pre>
+ * Mappings are refreshed automatically if they change.
+ */
+public class MappedControllerGroup {
+    /**
+     * maximum number of players, limited by the bits of a long
+     */
+    public static final int MAX_PLAYERS = 64;
+
+    private final ControllerMappings mappings;
+    private final int playerCount;
+    private final int slotCount;
+    private final Controller[] controllers;
+    private final CompiledMapping[] compiledMappings;
+    private final PlayerView[] playerViews;
+    private int mappingGeneration;
+    private float analogToDigitalTreshold;
+    private float analogToDigitalEnterTreshold;
+
+    // axis values indexed by player * slotCount + slot
+    private float[] axisValues;
+    private float[] lastAxisValues;
+    // one bit per player, indexed by slot
+    private long[] buttonsPressed;
+    private long[] lastButtonsPressed;
+
+    /**
+     * @param mappings    mappings to use, {@link ControllerMappings#commitConfig()} must have been called
+     * @param playerCount number of players, up to {@link #MAX_PLAYERS}
+     */
+    public MappedControllerGroup(ControllerMappings mappings, int playerCount) {
+        if (playerCount < 1 || playerCount > MAX_PLAYERS)
+            throw new IllegalArgumentException("playerCount must be between 1 and " + MAX_PLAYERS);
+
+        this.mappings = mappings;
+        this.playerCount = playerCount;
+        this.analogToDigitalTreshold = mappings.analogToDigitalTreshold;
+        this.analogToDigitalEnterTreshold = mappings.analogToDigitalEnterTreshold;
+        slotCount = mappings.getConfiguredSlotCount();
+        controllers = new Controller[playerCount];
+        compiledMappings = new CompiledMapping[playerCount];
+        playerViews = new PlayerView[playerCount];
+        for (int i = 0; i < playerCount; i++)
+            playerViews[i] = new PlayerView(i);
+
+        axisValues = new float[playerCount * slotCount];
+        lastAxisValues = new float[playerCount * slotCount];
+        buttonsPressed = new long[slotCount];
+        lastButtonsPressed = new long[slotCount];
+        mappingGeneration = mappings.getMappingGeneration();
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    /**
+     * @param player     player index
+     * @param controller controller of the player, or null to remove it
+     */
+    public void setController(int player, Controller controller) {
+        controllers[player] = controller;
+        compiledMappings[player] = resolveMapping(controller);
+    }
+
+    public Controller getController(int player) {
+        return controllers[player];
+    }
+
+    /**
+     * @return the player index of the given controller, or -1 if it is not in this group
+     */
+    public int getPlayerIndex(Controller controller) {
+        for (int i = 0; i < playerCount; i++)
+            if (controllers[i] == controller)
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * @return a view on the polled state of a single player. Views are preallocated, so no garbage is produced
+     */
+    public PlayerView getPlayer(int player) {
+        return playerViews[player];
+    }
+
+    private CompiledMapping resolveMapping(Controller controller) {
+        if (controller == null)
+            return null;
+
+        ControllerMappings.MappedInputs mapping = mappings.getControllerMapping(controller);
+        return (mapping != null ? mapping.getCompiledMapping() : null);
+    }
+
+    /**
+     * reads all mapped inputs of all controllers. Call this once per frame, afterwards all queries return the values
+     * read here until the next call.
+     */
+    public void poll() {
+        if (mappingGeneration != mappings.getMappingGeneration()) {
+            for (int player = 0; player < playerCount; player++)
+                compiledMappings[player] = resolveMapping(controllers[player]);
+            mappingGeneration = mappings.getMappingGeneration();
+        }
+
+        // swap current and last state
+        float[] swapAxis = lastAxisValues;
+        lastAxisValues = axisValues;
+        axisValues = swapAxis;
+        long[] swapButtons = lastButtonsPressed;
+        lastButtonsPressed = buttonsPressed;
+        buttonsPressed = swapButtons;
+
+        for (int slot = 0; slot < slotCount; slot++)
+            buttonsPressed[slot] = 0;
+
+        for (int player = 0; player < playerCount; player++) {
+            Controller controller = controllers[player];
+            CompiledMapping compiledMapping = compiledMappings[player];
+            int offset = player * slotCount;
+            long playerBit = 1L << player;
+
+            for (int slot = 0; slot < slotCount; slot++) {
+                boolean pressed;
+                float value;
+
+                if (compiledMapping == null || !compiledMapping.isMapped(slot)) {
+                    pressed = false;
+                    value = 0;
+                } else if (compiledMapping.getType(slot) == CompiledMapping.TYPE_BUTTON) {
+                    pressed = compiledMapping.isButtonPressed(controller, slot);
+                    value = 0;
+                } else {
+                    value = compiledMapping.getAxisValue(controller, slot, analogToDigitalTreshold,
+                            analogToDigitalEnterTreshold, lastAxisValues[offset + slot]);
+                    AxisProcessor axisProcessor = compiledMapping.getAxisProcessor(slot);
+                    // digital axis are not processed, like for events
+                    if (axisProcessor != null && compiledMapping.getType(slot) != CompiledMapping.TYPE_AXIS_DIGITAL)
+                        value = axisProcessor.smooth(lastAxisValues[offset + slot], value);
+                    // an axis mapped to buttons reports 1 when its first button is pressed
+                    pressed = value > 0 && compiledMapping.getButtonIndex(slot) >= 0;
+                }
+
+                axisValues[offset + slot] = value;
+                if (pressed)
+                    buttonsPressed[slot] |= playerBit;
+            }
+        }
+    }
+
+    /**
+     * @return bit mask of players pressing the given button, bit 0 is player 0
+     */
+    public long getPlayersPressing(int configuredId) {
+        int slot = mappings.getConfiguredSlot(configuredId);
+        return slot >= 0 ? buttonsPressed[slot] : 0;
+    }
+
+    /**
+     * @return bit mask of players that just pressed the given button, bit 0 is player 0
+     */
+    public long getPlayersJustPressed(int configuredId) {
+        int slot = mappings.getConfiguredSlot(configuredId);
+        return slot >= 0 ? buttonsPressed[slot] & ~lastButtonsPressed[slot] : 0;
+    }
+
+    public boolean isAnyButtonPressed(int configuredId) {
+        return getPlayersPressing(configuredId) != 0;
+    }
+
+    public boolean isAnyButtonJustPressed(int configuredId) {
+        return getPlayersJustPressed(configuredId) != 0;
+    }
+
+    public boolean isButtonPressed(int player, int configuredId) {
+        return (getPlayersPressing(configuredId) & (1L << player)) != 0;
+    }
+
+    public boolean isButtonJustPressed(int player, int configuredId) {
+        return (getPlayersJustPressed(configuredId) & (1L << player)) != 0;
+    }
+
+    public boolean isButtonJustReleased(int player, int configuredId) {
+        int slot = mappings.getConfiguredSlot(configuredId);
+        long playerBit = 1L << player;
+        return slot >= 0 && (buttonsPressed[slot] & playerBit) == 0 && (lastButtonsPressed[slot] & playerBit) != 0;
+    }
+
+    public float getConfiguredAxisValue(int player, int configuredId) {
+        int slot = mappings.getConfiguredSlot(configuredId);
+        return slot >= 0 ? axisValues[player * slotCount + slot] : 0;
+    }
+
+    public float getPreviousConfiguredAxisValue(int player, int configuredId) {
+        int slot = mappings.getConfiguredSlot(configuredId);
+        return slot >= 0 ? lastAxisValues[player * slotCount + slot] : 0;
+    }
+
+    /**
+     * Polled state of a single player of the group
+     */
+    public class PlayerView {
+        private final int player;
+
+        private PlayerView(int player) {
+            this.player = player;
+        }
+
+        public int getPlayer() {
+            return player;
+        }
+
+        public Controller getController() {
+            return controllers[player];
+        }
+
+        public boolean isButtonPressed(int configuredId) {
+            return MappedControllerGroup.this.isButtonPressed(player, configuredId);
+        }
+
+        public boolean isButtonJustPressed(int configuredId) {
+            return MappedControllerGroup.this.isButtonJustPressed(player, configuredId);
+        }
+
+        public boolean isButtonJustReleased(int configuredId) {
+            return MappedControllerGroup.this.isButtonJustReleased(player, configuredId);
+        }
+
+        public float getConfiguredAxisValue(int configuredId) {
+            return MappedControllerGroup.this.getConfiguredAxisValue(player, configuredId);
+        }
+
+        public float getPreviousConfiguredAxisValue(int configuredId) {
+            return MappedControllerGroup.this.getPreviousConfiguredAxisValue(player, configuredId);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package de.golfgl.gdx.controllers.mapping;
+
+/**
+ * Counters and latency histograms of the mapping layer. Set an instance on {@link MappedControllerAdapter},
+ * {@link ControllerToInputAdapter} or {@link MappedController} to find out how many events are mapped, how many are
+ * dropped and why, and how long dispatching them to your listener takes:
+ * <pre>
+ * MappingMetrics metrics = new MappingMetrics();
+ * controllerAdapter.setMetrics(metrics);
+ * ...
+ * metrics.publish(); // once per second, reports to the sink and resets
+ * </pre>
+ * Without metrics set, the cost is a single null check per event. Counters and histogram buckets are primitive
+ * arrays, so recording does not allocate. An instance is not thread safe, it should be used by the thread
+ * delivering the events.
+ * <p>
+ * Latencies are counted in {@link #BUCKET_COUNT} buckets. Bucket 0 holds latencies below 1 microsecond, every
+ * following bucket doubles the upper bound, the last one holds everything above.
+ */
+public class MappingMetrics {
+    /**
+     * configured events dispatched to the listener or event queue
+     */
+    public static final int EVENTS_DISPATCHED = 0;
+    /**
+     * events of controllers without mapping
+     */
+    public static final int EVENTS_NO_MAPPING = 1;
+    /**
+     * events of buttons or axis not mapped to a configured input
+     */
+    public static final int EVENTS_UNMAPPED = 2;
+    /**
+     * events of buttons mapped to analog axis or axis mapped to buttons
+     */
+    public static final int EVENTS_WRONG_TYPE = 3;
+    /**
+     * axis events not reported because the value did not change enough, see
+     * {@link MappedControllerAdapter#setAxisChangeEpsilon(float)}
+     */
+    public static final int EVENTS_FILTERED = 4;
+    /**
+     * key events sent by {@link ControllerToInputAdapter}, including repeats
+     */
+    public static final int KEYS_SENT = 5;
+    /**
+     * configured events without key mapping in {@link ControllerToInputAdapter}
+     */
+    public static final int KEYS_UNMAPPED = 6;
+    /**
+     * calls of {@link MappedController#poll()}
+     */
+    public static final int POLLS = 7;
+    /**
+     * events of controllers without player slot, see {@link MappedControllerAdapter#setPlayerSlots(PlayerSlots)}.
+     * Includes the presses joining a player
+     */
+    public static final int EVENTS_NO_PLAYER = 8;
+    public static final int COUNTER_COUNT = 9;
+
+    /**
+     * time from receiving an event until the listener returned
+     */
+    public static final int HISTOGRAM_DISPATCH = 0;
+    /**
+     * time needed by {@link MappedController#poll()}
+     */
+    public static final int HISTOGRAM_POLL = 1;
+    public static final int HISTOGRAM_COUNT = 2;
+
+    public static final int BUCKET_COUNT = 20;
+    private static final long FIRST_BUCKET_NANOS = 1000;
+
+    private final long[] counters = new long[COUNTER_COUNT];
+    private final long[] buckets = new long[HISTOGRAM_COUNT * BUCKET_COUNT];
+    private final long[] maxNanos = new long[HISTOGRAM_COUNT];
+    private MetricsSink sink;
+    // reused by publish()
+    private MappingMetrics snapshot;
+
+    public MetricsSink getSink() {
+        return sink;
+    }
+
+    /**
+     * @param sink receives the values on {@link #publish()}
+     */
+    public void setSink(MetricsSink sink) {
+        this.sink = sink;
+    }
+
+    public void count(int counter) {
+        counters[counter]++;
+    }
+
+    /**
+     * counts a dispatched event and its latency
+     */
+    public void recordDispatch(long nanos) {
+        counters[EVENTS_DISPATCHED]++;
+        record(HISTOGRAM_DISPATCH, nanos);
+    }
+
+    /**
+     * counts a poll and its duration
+     */
+    public void recordPoll(long nanos) {
+        counters[POLLS]++;
+        record(HISTOGRAM_POLL, nanos);
+    }
+
+    private void record(int histogram, long nanos) {
+        buckets[histogram * BUCKET_COUNT + getBucket(nanos)]++;
+        if (nanos > maxNanos[histogram])
+            maxNanos[histogram] = nanos;
+    }
+
+    /**
+     * @return bucket for the given latency
+     */
+    public static int getBucket(long nanos) {
+        if (nanos < FIRST_BUCKET_NANOS)
+            return 0;
+
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos / FIRST_BUCKET_NANOS);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * @return latency in nanoseconds below which values are counted in the bucket, Long.MAX_VALUE for the last one
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket < BUCKET_COUNT - 1 ? FIRST_BUCKET_NANOS << bucket : Long.MAX_VALUE;
+    }
+
+    public long getCount(int counter) {
+        return counters[counter];
+    }
+
+    /**
+     * @return all events received by the adapter, dispatched or dropped
+     */
+    public long getEventCount() {
+        return counters[EVENTS_DISPATCHED] + getDroppedEventCount();
+    }
+
+    /**
+     * @return events received by the adapter, but not dispatched
+     */
+    public long getDroppedEventCount() {
+        return counters[EVENTS_NO_MAPPING] + counters[EVENTS_UNMAPPED] + counters[EVENTS_WRONG_TYPE]
+                + counters[EVENTS_FILTERED] + counters[EVENTS_NO_PLAYER];
+    }
+
+    public long getBucketCount(int histogram, int bucket) {
+        return buckets[histogram * BUCKET_COUNT + bucket];
+    }
+
+    public long getMaxNanos(int histogram) {
+        return maxNanos[histogram];
+    }
+
+    /**
+     * @return number of values recorded in the histogram
+     */
+    public long getTotalCount(int histogram) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            total += buckets[histogram * BUCKET_COUNT + i];
+        return total;
+    }
+
+    /**
+     * @param percentile between 0 and 1, e.g. .99
+     * @return upper bound of the bucket containing the percentile, capped by the maximum recorded value. 0 if
+     * nothing was recorded
+     */
+    public long getPercentileNanos(int histogram, float percentile) {
+        long total = getTotalCount(histogram);
+        if (total == 0)
+            return 0;
+
+        long needed = Math.max(1, (long) Math.ceil(total * percentile));
+        long sum = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            sum += buckets[histogram * BUCKET_COUNT + i];
+            if (sum >= needed)
+                return Math.min(getBucketUpperBound(i), maxNanos[histogram]);
+        }
+
+        return maxNanos[histogram];
+    }
+
+    /**
+     * copies all values to the given instance
+     *
+     * @return target
+     */
+    public MappingMetrics snapshot(MappingMetrics target) {
+        System.arraycopy(counters, 0, target.counters, 0, COUNTER_COUNT);
+        System.arraycopy(buckets, 0, target.buckets, 0, buckets.length);
+        System.arraycopy(maxNanos, 0, target.maxNanos, 0, HISTOGRAM_COUNT);
+        return target;
+    }
+
+    public void reset() {
+        for (int i = 0; i < COUNTER_COUNT; i++)
+            counters[i] = 0;
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = 0;
+        for (int i = 0; i < HISTOGRAM_COUNT; i++)
+            maxNanos[i] = 0;
+    }
+
+    /**
+     * reports a snapshot of the values to the sink, if one is set, and resets them
+     */
+    public void publish() {
+        if (sink != null) {
+            if (snapshot == null)
+                snapshot = new MappingMetrics();
+            sink.report(snapshot(snapshot));
+        }
+
+        reset();
+    }
+
+    public interface MetricsSink {
+        /**
+         * @param snapshot values since the last publish. The instance is reused, copy it with
+         *                 {@link #snapshot(MappingMetrics)} to keep it
+         */
+        void report(MappingMetrics snapshot);
+    }
+}
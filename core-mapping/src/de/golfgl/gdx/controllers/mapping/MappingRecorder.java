@@ -0,0 +1,242 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.controllers.ControllerAdapter;
+
+/**
+ * Records mappings from controller events instead of polling {@link ControllerMappings#recordMapping(Controller, int)}
+ * every frame. Add it as a listener to the controllers, then start recording a single input with
+ * {@link #record(Controller, int, float)} or all inputs in a row with {@link #recordAll(Controller, int[], float)}:
+ * <pre>
+ * MappingRecorder recorder = new MappingRecorder(controllerMappings, recordingListener);
+ * Controllers.addListener(recorder);
+ * recorder.recordAll(controller, new int[]{BUTTON_JUMP, AXIS_HORIZONTAL}, 5f);
+ * </pre>
+ * The first qualifying button press or axis movement is recorded. Buttons and axis ignored by
+ * {@link ControllerMappings#recordButtonsToIgnoreForMapping(Controller)} are respected, axis mapped to two buttons
+ * wait for the second button.
+ * <p>
+ * Timeouts need {@link #update(float)} to be called every frame. It returns immediately if nothing is recorded.
+ */
+public class MappingRecorder extends ControllerAdapter {
+    private final ControllerMappings mappings;
+    private RecordingListener listener;
+    private Controller controller;
+    private int[] configuredIds;
+    private int step = -1;
+    private int recordedCount;
+    private float stepTimeout;
+    private float timeLeft;
+    private boolean waitingForSecondButton;
+
+    public MappingRecorder(ControllerMappings mappings, RecordingListener listener) {
+        this.mappings = mappings;
+        this.listener = listener;
+    }
+
+    public RecordingListener getListener() {
+        return listener;
+    }
+
+    public void setListener(RecordingListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * records a single configured input
+     *
+     * @param controller controller to record, or null for the first controller sending an event
+     * @param timeout    seconds to wait for input, 0 to wait forever
+     */
+    public void record(Controller controller, int configuredId, float timeout) {
+        recordAll(controller, new int[]{configuredId}, timeout);
+    }
+
+    /**
+     * records the given configured inputs one after another
+     *
+     * @param controller    controller to record, or null for the first controller sending an event
+     * @param configuredIds configured inputs to record
+     * @param stepTimeout   seconds to wait for every input before it is skipped, 0 to wait forever
+     */
+    public void recordAll(Controller controller, int[] configuredIds, float stepTimeout) {
+        cancel();
+
+        this.controller = controller;
+        this.configuredIds = configuredIds;
+        this.stepTimeout = stepTimeout;
+        recordedCount = 0;
+        step = -1;
+        nextStep();
+    }
+
+    /**
+     * stops recording without calling the listener
+     */
+    public void cancel() {
+        if (step >= 0)
+            mappings.cancelReverseButtonRecording();
+
+        step = -1;
+        configuredIds = null;
+        waitingForSecondButton = false;
+    }
+
+    public boolean isRecording() {
+        return step >= 0;
+    }
+
+    /**
+     * @return the configured input currently recorded, or -1
+     */
+    public int getCurrentConfiguredId() {
+        return step >= 0 ? configuredIds[step] : -1;
+    }
+
+    /**
+     * @return index of the configured input currently recorded in the array given to recordAll, or -1
+     */
+    public int getCurrentStep() {
+        return step;
+    }
+
+    /**
+     * @return the controller recorded. If recording was started without a controller, the first controller that
+     * sent an event
+     */
+    public Controller getController() {
+        return controller;
+    }
+
+    /**
+     * @return seconds left until the current input is skipped
+     */
+    public float getTimeLeft() {
+        return timeLeft;
+    }
+
+    /**
+     * counts down the timeout of the current input
+     *
+     * @param delta time in seconds
+     */
+    public void update(float delta) {
+        if (step < 0 || stepTimeout <= 0)
+            return;
+
+        timeLeft -= delta;
+        if (timeLeft <= 0) {
+            int configuredId = configuredIds[step];
+            mappings.cancelReverseButtonRecording();
+            waitingForSecondButton = false;
+            if (listener != null)
+                listener.inputTimedOut(configuredId);
+            nextStep();
+        }
+    }
+
+    private void nextStep() {
+        // recording might have been cancelled by the listener
+        if (configuredIds == null)
+            return;
+
+        step++;
+        waitingForSecondButton = false;
+
+        if (step >= configuredIds.length) {
+            boolean completed = recordedCount == configuredIds.length;
+            step = -1;
+            configuredIds = null;
+            if (listener != null)
+                listener.recordingFinished(completed);
+            return;
+        }
+
+        timeLeft = stepTimeout;
+        if (listener != null)
+            listener.waitingForInput(configuredIds[step], false);
+    }
+
+    @Override
+    public boolean buttonDown(Controller controller, int buttonIndex) {
+        if (step < 0 || !acceptController(controller) || !mappings.isButtonRecordable(buttonIndex))
+            return false;
+
+        handleResult(mappings.recordMapping(controller, configuredIds[step], buttonIndex, -1));
+        return true;
+    }
+
+    @Override
+    public boolean axisMoved(Controller controller, int axisIndex, float value) {
+        if (step < 0 || !acceptController(controller) || !mappings.isAxisValueRecordable(controller, axisIndex, value))
+            return false;
+
+        handleResult(mappings.recordMapping(controller, configuredIds[step], -1, axisIndex));
+        return true;
+    }
+
+    @Override
+    public void disconnected(Controller controller) {
+        if (step >= 0 && this.controller == controller) {
+            cancel();
+            if (listener != null)
+                listener.recordingFinished(false);
+        }
+    }
+
+    private boolean acceptController(Controller controller) {
+        if (this.controller == null)
+            this.controller = controller;
+
+        return this.controller == controller;
+    }
+
+    private void handleResult(ControllerMappings.RecordResult result) {
+        int configuredId = configuredIds[step];
+
+        switch (result) {
+            case recorded:
+                recordedCount++;
+                if (listener != null)
+                    listener.inputRecorded(configuredId);
+                nextStep();
+                break;
+            case need_second_button:
+                waitingForSecondButton = true;
+                timeLeft = stepTimeout;
+                if (listener != null)
+                    listener.waitingForInput(configuredId, true);
+                break;
+            default:
+                // input could not be used, wait for the next one
+        }
+    }
+
+    /**
+     * @return true if the first button of an axis was recorded and the reverse button is awaited
+     */
+    public boolean isWaitingForSecondButton() {
+        return waitingForSecondButton;
+    }
+
+    public interface RecordingListener {
+        /**
+         * called when the recorder waits for input
+         *
+         * @param secondButton true if the first button of an axis was recorded and its reverse button is awaited
+         */
+        void waitingForInput(int configuredId, boolean secondButton);
+
+        void inputRecorded(int configuredId);
+
+        /**
+         * called when no input was recorded in time, the recorder continues with the next input
+         */
+        void inputTimedOut(int configuredId);
+
+        /**
+         * @param completed true if all inputs were recorded
+         */
+        void recordingFinished(boolean completed);
+    }
+}
@@ -0,0 +1,215 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.controllers.ControllerAdapter;
+
+/**
+ * Assigns controllers to a fixed number of player slots, so games with several local players can route events by
+ * array index instead of looking up the player for every event.
+ * <p>
+ * Controllers join on connect or with their first button press, see {@link JoinPolicy}. When a controller
+ * disconnects, its slot is freed but reserved for it: if it reconnects with the same
+ * {@link Controller#getUniqueId()}, it gets its slot back. Other controllers only take a reserved slot if no
+ * unreserved slot is free.
+ * <p>
+ * Set it on a {@link MappedControllerAdapter} to receive events by player with
+ * {@link MappedControllerAdapter#playerButtonDown(int, int)} and the like. When using it standalone, add it as a
+ * listener to libGDX' Controllers. Controllers that are already connected when the game starts are not reported by
+ * the backend, join them with {@link #join(Controller)}.
+ */
+public class PlayerSlots extends ControllerAdapter {
+    private final Controller[] controllers;
+    // unique id of the controller last holding the slot, kept after disconnect for reconnecting
+    private final String[] reservedIds;
+    private JoinPolicy joinPolicy = JoinPolicy.onConnect;
+    private PlayerSlotListener listener;
+    private int playerCount;
+    private int version;
+
+    /**
+     * @param maxPlayers number of slots
+     */
+    public PlayerSlots(int maxPlayers) {
+        if (maxPlayers < 1)
+            throw new IllegalArgumentException("maxPlayers must be at least 1");
+
+        controllers = new Controller[maxPlayers];
+        reservedIds = new String[maxPlayers];
+    }
+
+    public JoinPolicy getJoinPolicy() {
+        return joinPolicy;
+    }
+
+    /**
+     * @param joinPolicy when controllers join. Default is {@link JoinPolicy#onConnect}
+     */
+    public PlayerSlots setJoinPolicy(JoinPolicy joinPolicy) {
+        this.joinPolicy = joinPolicy;
+        return this;
+    }
+
+    public PlayerSlotListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param listener informed when players join and leave, may be null
+     */
+    public PlayerSlots setListener(PlayerSlotListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public int getMaxPlayers() {
+        return controllers.length;
+    }
+
+    /**
+     * @return number of occupied slots
+     */
+    public int getPlayerCount() {
+        return playerCount;
+    }
+
+    /**
+     * @return the controller of the given slot, or null if the slot is free
+     */
+    public Controller getController(int slot) {
+        return controllers[slot];
+    }
+
+    /**
+     * @return the slot of the given controller, or -1 if it did not join
+     */
+    public int getSlot(Controller controller) {
+        for (int i = 0; i < controllers.length; i++)
+            if (controllers[i] == controller)
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * @return a number changed on every join and leave, for callers caching slots
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Assigns a slot to the controller: its reserved slot if it held one before, the first free unreserved slot
+     * otherwise, or the first free slot if all free slots are reserved.
+     *
+     * @return the slot of the controller, or -1 if all slots are occupied
+     */
+    public int join(Controller controller) {
+        int slot = getSlot(controller);
+        if (slot >= 0)
+            return slot;
+
+        String uniqueId = controller.getUniqueId();
+        int freeSlot = -1;
+        int reservedFreeSlot = -1;
+        for (int i = 0; i < controllers.length && slot < 0; i++) {
+            if (controllers[i] != null)
+                continue;
+
+            if (reservedIds[i] == null) {
+                if (freeSlot < 0)
+                    freeSlot = i;
+            } else if (uniqueId != null && uniqueId.equals(reservedIds[i]))
+                slot = i;
+            else if (reservedFreeSlot < 0)
+                reservedFreeSlot = i;
+        }
+
+        if (slot < 0)
+            slot = freeSlot >= 0 ? freeSlot : reservedFreeSlot;
+        if (slot < 0)
+            return -1;
+
+        controllers[slot] = controller;
+        reservedIds[slot] = uniqueId;
+        playerCount++;
+        version++;
+
+        if (listener != null)
+            listener.playerJoined(slot, controller);
+
+        return slot;
+    }
+
+    /**
+     * Frees the slot of the controller, but keeps it reserved for the controller to reconnect.
+     *
+     * @return the freed slot, or -1 if the controller had none
+     */
+    public int leave(Controller controller) {
+        int slot = getSlot(controller);
+        if (slot >= 0)
+            free(slot);
+
+        return slot;
+    }
+
+    /**
+     * Frees the slot and drops its reservation, so any controller may take it
+     */
+    public void release(int slot) {
+        if (controllers[slot] != null)
+            free(slot);
+
+        reservedIds[slot] = null;
+    }
+
+    /**
+     * Frees all slots and drops all reservations
+     */
+    public void releaseAll() {
+        for (int i = 0; i < controllers.length; i++)
+            release(i);
+    }
+
+    private void free(int slot) {
+        Controller controller = controllers[slot];
+        controllers[slot] = null;
+        playerCount--;
+        version++;
+
+        if (listener != null)
+            listener.playerLeft(slot, controller);
+    }
+
+    @Override
+    public void connected(Controller controller) {
+        if (joinPolicy == JoinPolicy.onConnect)
+            join(controller);
+    }
+
+    @Override
+    public void disconnected(Controller controller) {
+        leave(controller);
+    }
+
+    /**
+     * When a controller is assigned to a player slot
+     */
+    public enum JoinPolicy {
+        /**
+         * every controller joins when it connects
+         */
+        onConnect,
+        /**
+         * a controller joins when one of its buttons is pressed. This needs {@link MappedControllerAdapter}, the
+         * joining press is not reported as an event
+         */
+        firstPress
+    }
+
+    public interface PlayerSlotListener {
+        void playerJoined(int slot, Controller controller);
+
+        void playerLeft(int slot, Controller controller);
+    }
+}
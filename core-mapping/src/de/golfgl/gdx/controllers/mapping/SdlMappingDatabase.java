@@ -0,0 +1,336 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+
+/**
+ * Default mappings read from a mapping database in the format of SDL's gamecontrollerdb.txt, one controller per
+ * line:
+ * <pre>
+ * 030000005e0400008e02000000007801,XInput Controller,a:b0,b:b1,leftx:a0,lefty:a1,dpup:h0.1,platform:Windows,
+ * </pre>
+ * The SDL elements (a, b, start, leftx, dpleft, ...) are assigned to configured inputs with
+ * {@link #mapElement(String, int)} and {@link #mapButtonsToAxis(String, String, int)}. Set the database on
+ * {@link ControllerMappings#setMappingDatabase(SdlMappingDatabase)} to use it for controllers without a recorded
+ * mapping.
+ * <p>
+ * Lines are indexed by normalized controller name and GUID, so looking up a controller is a hash lookup. The GUID is
+ * matched against {@link Controller#getUniqueId()}, which the gdx-controllers 2 backends do not report as SDL GUID,
+ * so only the lookup by name works reliably.
+ * <p>
+ * Inverted axis (a1~) are mapped with negated values. Hat bindings (h0.1), half axis elements (+leftx) and half
+ * axis inputs (+a2) are not supported: they are skipped and counted, see {@link #getSkippedBindingCount()}.
+ */
+public class SdlMappingDatabase {
+    private static final String[] ELEMENTS = {"a", "b", "x", "y", "back", "guide", "start", "leftstick",
+            "rightstick", "leftshoulder", "rightshoulder", "dpup", "dpdown", "dpleft", "dpright", "leftx", "lefty",
+            "rightx", "righty", "lefttrigger", "righttrigger", "misc1", "paddle1", "paddle2", "paddle3", "paddle4",
+            "touchpad"};
+
+    private static final int KIND_BUTTON = 1;
+    private static final int KIND_AXIS = 2;
+    private static final int KIND_AXIS_INVERTED = 3;
+
+    private final String platform;
+    // bindings of a line: element index << 20 | kind << 16 | physical index
+    private final HashMap<String, int[]> bindingsByGuid = new HashMap<>();
+    private final HashMap<String, int[]> bindingsByName = new HashMap<>();
+
+    // configured ids by element index
+    private final int[] configuredIdByElement = newFilledArray(ELEMENTS.length);
+    private final IntArray buttonAxisMappings = new IntArray();
+    private int skippedBindingCount;
+
+    /**
+     * @param platform only lines for this platform (as given in the platform field, e.g. "Windows", "Android") or
+     *                 without platform are read. null to read all lines
+     */
+    public SdlMappingDatabase(String platform) {
+        this.platform = platform;
+    }
+
+    private static int[] newFilledArray(int size) {
+        int[] array = new int[size];
+        for (int i = 0; i < size; i++)
+            array[i] = -1;
+        return array;
+    }
+
+    private static int findElement(String element) {
+        for (int i = 0; i < ELEMENTS.length; i++)
+            if (ELEMENTS[i].equals(element))
+                return i;
+
+        return -1;
+    }
+
+    private static int checkElement(String element) {
+        int elementIndex = findElement(element);
+        if (elementIndex < 0)
+            throw new IllegalArgumentException("Unknown element " + element);
+        return elementIndex;
+    }
+
+    /**
+     * maps an SDL element to a configured input. Buttons and axis of the controller are mapped as defined in the
+     * database line.
+     *
+     * @param element      SDL element name, e.g. "a", "start" or "leftx"
+     * @param configuredId configured input id
+     */
+    public SdlMappingDatabase mapElement(String element, int configuredId) {
+        configuredIdByElement[checkElement(element)] = configuredId;
+        return this;
+    }
+
+    /**
+     * maps two SDL button elements to a configured axis
+     *
+     * @param positiveElement element reporting 1, e.g. "dpright"
+     * @param negativeElement element reporting -1, e.g. "dpleft"
+     * @param configuredId    configured input id of the axis
+     */
+    public SdlMappingDatabase mapButtonsToAxis(String positiveElement, String negativeElement, int configuredId) {
+        buttonAxisMappings.add(configuredId);
+        buttonAxisMappings.add(checkElement(positiveElement));
+        buttonAxisMappings.add(checkElement(negativeElement));
+        return this;
+    }
+
+    /**
+     * @return number of controllers in the database
+     */
+    public int getEntryCount() {
+        return bindingsByGuid.size();
+    }
+
+    /**
+     * @return number of bindings of the read lines that are not supported and were skipped, e.g. hats
+     */
+    public int getSkippedBindingCount() {
+        return skippedBindingCount;
+    }
+
+    /**
+     * reads a database file
+     *
+     * @return number of lines read into the database
+     */
+    public int load(FileHandle file) {
+        Reader reader = file.reader(64 * 1024, "UTF-8");
+        try {
+            return load(reader);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Could not read mapping database " + file.path(), e);
+        }
+    }
+
+    /**
+     * reads a database. Lines for controllers already in the database replace them.
+     *
+     * @param reader reader to read from, is closed afterwards
+     * @return number of lines read into the database
+     */
+    public int load(Reader reader) throws IOException {
+        BufferedReader bufferedReader = (reader instanceof BufferedReader ? (BufferedReader) reader
+                : new BufferedReader(reader, 64 * 1024));
+        IntArray bindings = new IntArray(32);
+        int count = 0;
+
+        try {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                if (parseLine(line, bindings))
+                    count++;
+            }
+        } finally {
+            bufferedReader.close();
+        }
+
+        return count;
+    }
+
+    private boolean parseLine(String line, IntArray bindings) {
+        int length = line.length();
+        if (length == 0 || line.charAt(0) == '#')
+            return false;
+
+        int guidEnd = line.indexOf(',');
+        if (guidEnd <= 0)
+            return false;
+        int nameEnd = line.indexOf(',', guidEnd + 1);
+        if (nameEnd < 0)
+            return false;
+
+        bindings.clear();
+        int fieldStart = nameEnd + 1;
+        while (fieldStart < length) {
+            int fieldEnd = line.indexOf(',', fieldStart);
+            if (fieldEnd < 0)
+                fieldEnd = length;
+
+            int colon = line.indexOf(':', fieldStart);
+            if (colon > fieldStart && colon < fieldEnd - 1) {
+                String element = line.substring(fieldStart, colon);
+
+                if (element.equals("platform")) {
+                    if (platform != null && !line.regionMatches(true, colon + 1, platform, 0, platform.length()))
+                        return false;
+                } else {
+                    int binding = parseBinding(element, line, colon + 1, fieldEnd);
+                    if (binding >= 0)
+                        bindings.add(binding);
+                    else
+                        skippedBindingCount++;
+                }
+            }
+
+            fieldStart = fieldEnd + 1;
+        }
+
+        int[] lineBindings = bindings.toArray();
+        bindingsByGuid.put(line.substring(0, guidEnd).toLowerCase(), lineBindings);
+        bindingsByName.put(normalizeName(line.substring(guidEnd + 1, nameEnd)), lineBindings);
+        return true;
+    }
+
+    /**
+     * @return encoded binding, or -1 if not supported
+     */
+    private static int parseBinding(String element, String line, int start, int end) {
+        int elementIndex = findElement(element);
+        if (elementIndex < 0)
+            return -1;
+
+        char kindChar = line.charAt(start);
+        int kind;
+        if (kindChar == 'b')
+            kind = KIND_BUTTON;
+        else if (kindChar == 'a')
+            kind = KIND_AXIS;
+        else
+            // hats and half axis inputs
+            return -1;
+
+        int index = 0;
+        boolean hasDigits = false;
+        int i = start + 1;
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9')
+                break;
+            index = index * 10 + (c - '0');
+            hasDigits = true;
+            if (index > 0xffff)
+                return -1;
+        }
+
+        if (!hasDigits)
+            return -1;
+
+        if (i < end) {
+            // only inverted axis (a1~) may have a suffix
+            if (kind != KIND_AXIS || line.charAt(i) != '~' || i + 1 < end)
+                return -1;
+            kind = KIND_AXIS_INVERTED;
+        }
+
+        return elementIndex << 20 | kind << 16 | index;
+    }
+
+    /**
+     * @return controller name in lower case with single spaces
+     */
+    public static String normalizeName(String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        boolean space = false;
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c))
+                space = normalized.length() > 0;
+            else {
+                if (space)
+                    normalized.append(' ');
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            }
+        }
+
+        return normalized.toString();
+    }
+
+    private int[] findBindings(Controller controller) {
+        int[] bindings = null;
+
+        String uniqueId = controller.getUniqueId();
+        if (uniqueId != null)
+            bindings = bindingsByGuid.get(uniqueId.toLowerCase());
+
+        if (bindings == null && controller.getName() != null)
+            bindings = bindingsByName.get(normalizeName(controller.getName()));
+
+        return bindings;
+    }
+
+    /**
+     * @return true if the database contains the controller
+     */
+    public boolean hasMapping(Controller controller) {
+        return findBindings(controller) != null;
+    }
+
+    /**
+     * adds the mappings for the given controller, four ints per mapping: configured id, axis, button, reverse button
+     * or 1 for an inverted axis
+     *
+     * @return false if the controller is not in the database
+     */
+    boolean getRawMappings(Controller controller, IntArray rawMappings) {
+        int[] bindings = findBindings(controller);
+        if (bindings == null)
+            return false;
+
+        for (int binding : bindings) {
+            int configuredId = configuredIdByElement[binding >>> 20];
+            if (configuredId == -1)
+                continue;
+
+            int kind = binding >> 16 & 0xf;
+            boolean isAxis = kind != KIND_BUTTON;
+            rawMappings.add(configuredId);
+            rawMappings.add(isAxis ? binding & 0xffff : -1);
+            rawMappings.add(isAxis ? -1 : binding & 0xffff);
+            rawMappings.add(kind == KIND_AXIS_INVERTED ? 1 : -1);
+        }
+
+        for (int i = 0; i + 2 < buttonAxisMappings.size; i += 3) {
+            int button = findButton(bindings, buttonAxisMappings.get(i + 1));
+            int reverseButton = findButton(bindings, buttonAxisMappings.get(i + 2));
+
+            if (button >= 0 && reverseButton >= 0) {
+                rawMappings.add(buttonAxisMappings.get(i));
+                rawMappings.add(-1);
+                rawMappings.add(button);
+                rawMappings.add(reverseButton);
+            }
+        }
+
+        return true;
+    }
+
+    private static int findButton(int[] bindings, int elementIndex) {
+        for (int binding : bindings)
+            if (binding >>> 20 == elementIndex && (binding >> 16 & 0xf) == KIND_BUTTON)
+                return binding & 0xffff;
+
+        return -1;
+    }
+}
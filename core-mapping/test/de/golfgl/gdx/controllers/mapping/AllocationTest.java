@@ -0,0 +1,242 @@
+package de.golfgl.gdx.controllers.mapping;
+
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.controllers.Controller;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Steady state event dispatch and polling must not produce garbage. Every scenario is warmed up first, then the
+ * bytes allocated by the current thread are measured and compared against an empty run.
+ */
+public class AllocationTest {
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int MEASURED_ITERATIONS = 10000;
+
+    private com.sun.management.ThreadMXBean threadMXBean;
+    private ControllerMappings mappings;
+    private ControllerMappingsTest.MockedController controller;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisAnalog, 3));
+        mappings.commitConfig();
+
+        controller = new ControllerMappingsTest.MockedController();
+        controller.axisValues = new float[3];
+        mappings.recordMapping(controller, 1, 5, -1);
+        mappings.recordMapping(controller, 2, -1, 0);
+        mappings.recordMapping(controller, 3, -1, 1);
+    }
+
+    @Test
+    public void testAdapterDispatch() {
+        final CountingAdapter adapter = new CountingAdapter(mappings);
+        adapter.setMetrics(new MappingMetrics());
+
+        assertNoAllocation("MappedControllerAdapter", new Runnable() {
+            int step;
+
+            @Override
+            public void run() {
+                step++;
+                adapter.buttonDown(controller, 5);
+                adapter.buttonUp(controller, 5);
+                adapter.buttonDown(controller, 7);
+                adapter.axisMoved(controller, 0, (step & 1) == 0 ? 1 : -1);
+                adapter.axisMoved(controller, 1, (step & 7) / 8f);
+            }
+        });
+        assertTrue(adapter.eventCount > 0);
+    }
+
+    @Test
+    public void testAdapterCoalescingAndQueue() {
+        final CountingAdapter adapter = new CountingAdapter(mappings);
+        adapter.setAxisDeadzone(.1f).setAxisChangeEpsilon(.05f).setCoalesceAxisEvents(true);
+
+        assertNoAllocation("MappedControllerAdapter coalescing", new Runnable() {
+            int step;
+
+            @Override
+            public void run() {
+                step++;
+                adapter.axisMoved(controller, 1, (step & 7) / 8f);
+                adapter.axisMoved(controller, 1, (step & 3) / 4f);
+                adapter.flush();
+            }
+        });
+
+        final CountingAdapter queuedAdapter = new CountingAdapter(mappings);
+        queuedAdapter.setEventQueue(new ConfiguredEventQueue(16));
+
+        assertNoAllocation("MappedControllerAdapter queue", new Runnable() {
+            int step;
+
+            @Override
+            public void run() {
+                step++;
+                queuedAdapter.buttonDown(controller, 5);
+                queuedAdapter.axisMoved(controller, 1, (step & 7) / 8f);
+                queuedAdapter.buttonUp(controller, 5);
+                queuedAdapter.drainEventQueue();
+            }
+        });
+        assertTrue(adapter.eventCount > 0);
+        assertTrue(queuedAdapter.eventCount > 0);
+    }
+
+    @Test
+    public void testPolling() {
+        final MappedController mappedController = new MappedController(controller, mappings);
+        mappedController.setMetrics(new MappingMetrics());
+        final MappedControllerGroup group = new MappedControllerGroup(mappings, 4);
+        group.setController(0, controller);
+
+        assertNoAllocation("MappedController", new Runnable() {
+            int step;
+            float sum;
+
+            @Override
+            public void run() {
+                step++;
+                controller.pressedButton = (step & 1) == 0 ? 5 : -1;
+                controller.axisValues[0] = (step & 2) == 0 ? 1 : -1;
+                controller.axisValues[1] = (step & 7) / 8f;
+
+                mappedController.poll();
+                if (mappedController.isButtonJustPressed(1) || mappedController.isButtonPressed(1))
+                    sum += mappedController.getConfiguredAxisValue(2);
+                sum += mappedController.getPreviousConfiguredAxisValue(3);
+
+                group.poll();
+                if (group.isAnyButtonJustPressed(1))
+                    sum += group.getConfiguredAxisValue(0, 3);
+            }
+        });
+    }
+
+    @Test
+    public void testControllerToInputAdapter() {
+        final ControllerToInputAdapter inputAdapter = new ControllerToInputAdapter(mappings);
+        inputAdapter.addButtonMapping(1, 62);
+        inputAdapter.addAxisMapping(2, 21, 22);
+        inputAdapter.setKeyRepeat(.1f, .05f, .02f, .5f);
+        inputAdapter.setRepeatButtonKeys(true);
+        final CountingInputProcessor inputProcessor = new CountingInputProcessor();
+        inputAdapter.setInputProcessor(inputProcessor);
+
+        assertNoAllocation("ControllerToInputAdapter", new Runnable() {
+            int step;
+
+            @Override
+            public void run() {
+                step++;
+                inputAdapter.buttonDown(controller, 5);
+                inputAdapter.axisMoved(controller, 0, (step & 16) == 0 ? 1 : -1);
+                inputAdapter.update(.03f);
+                inputAdapter.buttonUp(controller, 5);
+                if ((step & 31) == 0)
+                    inputAdapter.axisMoved(controller, 0, 0);
+            }
+        });
+        assertTrue(inputProcessor.keyCount > 0);
+    }
+
+    @Test
+    public void testMissingInputs() {
+        mappings.resetMappings(controller);
+        mappings.recordMapping(controller, 1, 5, -1);
+        final ControllerMappings.MappedInputs mappedInputs = mappings.getControllerMapping(controller);
+
+        assertNoAllocation("MappedInputs missing inputs", new Runnable() {
+            int sum;
+
+            @Override
+            public void run() {
+                if (!mappedInputs.isComplete())
+                    sum += mappedInputs.getMissingCount();
+                for (int slot = mappedInputs.nextMissingSlot(0); slot >= 0;
+                     slot = mappedInputs.nextMissingSlot(slot + 1))
+                    sum += mappings.getConfiguredId(slot);
+            }
+        });
+    }
+
+    private void assertNoAllocation(String name, Runnable scenario) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            scenario.run();
+
+        long threadId = Thread.currentThread().getId();
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++)
+            scenario.run();
+        long end = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        // the measurement itself might allocate
+        long baselineStart = threadMXBean.getThreadAllocatedBytes(threadId);
+        long baselineEnd = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        long allocated = (end - start) - (baselineEnd - baselineStart);
+        // less than a byte per iteration: nothing allocated in steady state
+        assertTrue(name + " allocated " + allocated + " bytes in " + MEASURED_ITERATIONS + " iterations",
+                allocated < MEASURED_ITERATIONS);
+    }
+
+    private static class CountingAdapter extends MappedControllerAdapter {
+        private int eventCount;
+
+        private CountingAdapter(ControllerMappings mappings) {
+            super(mappings);
+        }
+
+        @Override
+        public boolean configuredButtonDown(Controller controller, int buttonId) {
+            eventCount++;
+            return true;
+        }
+
+        @Override
+        public boolean configuredButtonUp(Controller controller, int buttonId) {
+            eventCount++;
+            return true;
+        }
+
+        @Override
+        public boolean configuredAxisMoved(Controller controller, int axisId, float value) {
+            eventCount++;
+            return true;
+        }
+    }
+
+    private static class CountingInputProcessor extends InputAdapter {
+        private int keyCount;
+
+        @Override
+        public boolean keyDown(int keycode) {
+            keyCount++;
+            return true;
+        }
+
+        @Override
+        public boolean keyUp(int keycode) {
+            keyCount++;
+            return true;
+        }
+    }
+}
@@ -2,14 +2,28 @@ package de.golfgl.gdx.controllers.mapping;
 
 import com.badlogic.gdx.ApplicationListener;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.InputAdapter;
 import com.badlogic.gdx.backends.headless.HeadlessApplication;
 import com.badlogic.gdx.controllers.Controller;
 import com.badlogic.gdx.controllers.ControllerListener;
 import com.badlogic.gdx.controllers.ControllerMapping;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
 import com.badlogic.gdx.utils.JsonWriter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -184,6 +198,18 @@ public class ControllerMappingsTest {
         assertEquals(.6f, mappedController.getConfiguredAxisValue(6), .01f);
         assertEquals(.5f, mappedController.getConfiguredAxisValue(5), .01f);
         assertEquals(-1f, mappedController.getConfiguredAxisValue(7), .01f);
+
+        // with hysteresis, digital axis needs .8 to switch on
+        mappings.analogToDigitalEnterTreshold = .8f;
+        mappedController = new MappedController(controller, mappings);
+        assertEquals(0, mappedController.getConfiguredAxisValue(7), .01f);
+        controller.axisValues[2] = -.9f;
+        assertEquals(-1f, mappedController.getConfiguredAxisValue(7), .01f);
+        // and keeps the value down to .5
+        controller.axisValues[2] = -.7f;
+        assertEquals(-1f, mappedController.getConfiguredAxisValue(7), .01f);
+        controller.axisValues[2] = -.4f;
+        assertEquals(0, mappedController.getConfiguredAxisValue(7), .01f);
         assertEquals(0, mappedController.getConfiguredAxisValue(3), .01f);
     }
 
@@ -350,8 +376,1356 @@ public class ControllerMappingsTest {
         assertEquals(1, mappedController.getConfiguredAxisValue(3), 0.1f);
     }
 
+    @Test
+    public void testStreamingJsonSaveLoad() throws IOException {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 3));
+
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.axisValues[0] = 1f;
+        controller.pressedButton = -1;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 2));
+        controller.pressedButton = 2;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 1));
+        controller.pressedButton = 1;
+        assertEquals(ControllerMappings.RecordResult.need_second_button, mappings.recordMapping(controller, 3));
+        controller.pressedButton = 0;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 3));
+
+        // streamed output must be the same as the tree output
+        StringWriter writer = new StringWriter();
+        mappings.writeJson(writer);
+        assertEquals(mappings.toJson().toJson(JsonWriter.OutputType.json), writer.toString());
+
+        MappedController mappedController = new MappedController(controller, mappings);
+        mappings.resetMappings(controller);
+        mappedController.refreshMappingCache();
+        assertEquals(0, mappedController.getConfiguredAxisValue(2), 0.1f);
+
+        mappings.fillFromJson(new StringReader(writer.toString()));
+        mappedController.refreshMappingCache();
+
+        assertEquals(1, mappedController.getConfiguredAxisValue(2), 0.1f);
+        controller.pressedButton = 2;
+        assertTrue(mappedController.isButtonPressed(1));
+        controller.pressedButton = 1;
+        assertEquals(1, mappedController.getConfiguredAxisValue(3), 0.1f);
+
+        StringWriter reloaded = new StringWriter();
+        mappings.writeJson(reloaded);
+        assertEquals(writer.toString(), reloaded.toString());
+    }
+
+    @Test
+    public void testLazyLoading() {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.commitConfig();
+
+        String json = "[{\"name\":\"Other\",\"mapping\":[{\"confId\":1,\"button\":5}]}," +
+                "{\"name\":\"" + new MockedController().getName() + "\",\"mapping\":[{\"confId\":1,\"button\":2}," +
+                "{\"confId\":2,\"button\":1,\"buttonR\":0}]}]";
+
+        mappings.lazyLoading = true;
+        mappings.fillFromJson(new JsonReader().parse(json));
+
+        // pending mappings are saved again
+        JsonValue saved = mappings.toJson();
+        assertEquals(2, saved.size);
+
+        MockedController controller = new MockedController();
+        controller.pressedButton = 2;
+        MappedController mappedController = new MappedController(controller, mappings);
+        assertTrue(mappedController.isButtonPressed(1));
+        controller.pressedButton = 0;
+        assertEquals(-1, mappedController.getConfiguredAxisValue(2), 0.1f);
+
+        // saved output is the same as of eager loading, no matter if an entry was used
+        ControllerMappings eager = new ControllerMappings();
+        eager.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        eager.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        eager.commitConfig();
+        eager.fillFromJson(new JsonReader().parse(json));
+        assertEquals(eager.toJson().toJson(JsonWriter.OutputType.json),
+                mappings.toJson().toJson(JsonWriter.OutputType.json));
+
+        // and loads to the same mapped inputs
+        ControllerMappings reloaded = new ControllerMappings();
+        reloaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        reloaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        reloaded.commitConfig();
+        reloaded.fillFromJson(mappings.toJson());
+        ControllerMappings.MappedInputs eagerInputs = eager.getControllerMapping(controller);
+        ControllerMappings.MappedInputs reloadedInputs = reloaded.getControllerMapping(controller);
+        for (int configuredId = 1; configuredId <= 2; configuredId++) {
+            ControllerMappings.MappedInput eagerInput = eagerInputs.getMappedInput(configuredId);
+            ControllerMappings.MappedInput reloadedInput = reloadedInputs.getMappedInput(configuredId);
+            assertEquals(eagerInput.getButtonIndex(), reloadedInput.getButtonIndex());
+            assertEquals(eagerInput.getReverseButtonIndex(), reloadedInput.getReverseButtonIndex());
+            assertEquals(eagerInput.getAxisIndex(), reloadedInput.getAxisIndex());
+        }
+    }
+
+    @Test
+    public void testSdlMappingDatabase() throws IOException {
+        String database = "# comment\n" +
+                "03000000aaaa00000100000000000000,Other Pad,a:b3,platform:Windows,\n" +
+                "03000000bbbb00000100000000000000,  test ,a:b2,b:b4,leftx:a0,lefty:a1~,dpleft:b1,dpright:b0," +
+                "dpup:h0.1,+rightx:b5,platform:Linux,\n" +
+                "03000000bbbb00000100000000000000,Test,a:b3,platform:Windows,\n";
+
+        SdlMappingDatabase mappingDatabase = new SdlMappingDatabase("Linux")
+                .mapElement("a", 1)
+                .mapElement("lefty", 2)
+                .mapButtonsToAxis("dpright", "dpleft", 3);
+        assertEquals(1, mappingDatabase.load(new StringReader(database)));
+        assertEquals(1, mappingDatabase.getEntryCount());
+        // hat and half axis
+        assertEquals(2, mappingDatabase.getSkippedBindingCount());
+
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 3));
+        mappings.commitConfig();
+        mappings.setMappingDatabase(mappingDatabase);
+
+        MockedController controller = new MockedController();
+        assertTrue(mappingDatabase.hasMapping(controller));
+        controller.axisValues = new float[3];
+        controller.axisValues[1] = .8f;
+        controller.pressedButton = 2;
+
+        MappedController mappedController = new MappedController(controller, mappings);
+        assertTrue(mappedController.isButtonPressed(1));
+        // lefty is inverted
+        assertEquals(-.8f, mappedController.getConfiguredAxisValue(2), 0.01f);
+        controller.pressedButton = 1;
+        assertEquals(-1, mappedController.getConfiguredAxisValue(3), 0.01f);
+        controller.pressedButton = 0;
+        assertEquals(1, mappedController.getConfiguredAxisValue(3), 0.01f);
+
+        // default mappings are not saved
+        assertEquals("[]", mappings.toJson().toJson(JsonWriter.OutputType.json));
+
+        // inversion is kept when a recorded mapping is saved and loaded
+        mappings.recordMapping(controller, 1, 2, -1);
+        String json = mappings.toJson().toJson(JsonWriter.OutputType.json);
+        assertTrue(json.contains("\"inverted\":true"));
+        ControllerMappings loaded = new ControllerMappings();
+        loaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        loaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        loaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 3));
+        loaded.commitConfig();
+        assertTrue(loaded.fillFromJson(new StringReader(json)));
+        assertEquals(-.8f, new MappedController(controller, loaded).getConfiguredAxisValue(2), 0.01f);
+        assertEquals(json, loaded.toJson().toJson(JsonWriter.OutputType.json));
+    }
+
+    @Test
+    public void testMappingRecorder() {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 3));
+        mappings.commitConfig();
+
+        final StringBuilder events = new StringBuilder();
+        MappingRecorder recorder = new MappingRecorder(mappings, new MappingRecorder.RecordingListener() {
+            @Override
+            public void waitingForInput(int configuredId, boolean secondButton) {
+                events.append("w").append(configuredId).append(secondButton ? "s " : " ");
+            }
+
+            @Override
+            public void inputRecorded(int configuredId) {
+                events.append("r").append(configuredId).append(' ');
+            }
+
+            @Override
+            public void inputTimedOut(int configuredId) {
+                events.append("t").append(configuredId).append(' ');
+            }
+
+            @Override
+            public void recordingFinished(boolean completed) {
+                events.append(completed ? "done" : "incomplete");
+            }
+        });
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.pressedButton = -1;
+
+        recorder.recordAll(null, new int[]{1, 2, 3}, 2f);
+        // nothing happens while idle
+        recorder.update(1f);
+        assertEquals(1, recorder.getCurrentConfiguredId());
+        // low axis values are not recorded
+        assertFalse(recorder.axisMoved(controller, 1, .2f));
+        recorder.buttonDown(controller, 4);
+        assertEquals(2, recorder.getCurrentConfiguredId());
+        recorder.buttonDown(controller, 5);
+        assertTrue(recorder.isWaitingForSecondButton());
+        recorder.buttonDown(controller, 6);
+        assertEquals(3, recorder.getCurrentConfiguredId());
+        recorder.update(2.5f);
+        assertFalse(recorder.isRecording());
+        assertEquals("w1 r1 w2 w2s r2 w3 t3 incomplete", events.toString());
+
+        controller.pressedButton = 4;
+        MappedController mappedController = new MappedController(controller, mappings);
+        assertTrue(mappedController.isButtonPressed(1));
+        controller.pressedButton = 6;
+        assertEquals(-1, mappedController.getConfiguredAxisValue(2), 0.01f);
+
+        events.setLength(0);
+        recorder.record(controller, 3, 0);
+        recorder.axisMoved(controller, 2, -.9f);
+        assertEquals("w3 r3 done", events.toString());
+        controller.axisValues[2] = .7f;
+        assertEquals(.7f, mappedController.getConfiguredAxisValue(3), 0.01f);
+    }
+
+    @Test
+    public void testCalibration() throws IOException {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisDigital, 3));
+        mappings.commitConfig();
+
+        // axis 0 rests at .1, axis 1 is broken, button 3 is stuck
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[]{.1f, .9f, 0, 0};
+        controller.pressedButton = 3;
+
+        ControllerCalibration calibration = new ControllerCalibration(mappings);
+        calibration.duration = .1f;
+        calibration.begin(controller);
+        assertFalse(calibration.update(.05f));
+        controller.axisValues[2] = .04f;
+        assertTrue(calibration.update(.05f));
+        assertEquals(2, calibration.getSampleCount());
+        assertEquals(.02f, calibration.getAxisMean(2), 0.0001f);
+        assertEquals(.0008f, calibration.getAxisVariance(2), 0.0001f);
+        assertTrue(calibration.isButtonIgnored(3));
+        assertTrue(calibration.isAxisIgnored(1));
+        assertEquals(.1f, calibration.getRestingOffset(0), 0.0001f);
+        calibration.apply();
+
+        // stuck inputs are not recorded
+        assertEquals(ControllerMappings.RecordResult.nothing_done, mappings.recordMapping(controller, 1));
+        controller.pressedButton = 5;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 1));
+        controller.pressedButton = -1;
+        controller.axisValues = new float[]{.55f, .9f, 0, 0};
+        // offset removed, so .55 is too low
+        assertEquals(ControllerMappings.RecordResult.nothing_done, mappings.recordMapping(controller, 3));
+        controller.axisValues[0] = .7f;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 3));
+
+        MappedController mappedController = new MappedController(controller, mappings);
+        controller.axisValues[0] = .55f;
+        assertEquals(0, mappedController.getConfiguredAxisValue(3), 0.01f);
+        controller.axisValues[0] = .95f;
+        assertEquals(1, mappedController.getConfiguredAxisValue(3), 0.01f);
+
+        // calibration is saved with the mapping
+        StringWriter writer = new StringWriter();
+        mappings.writeJson(writer);
+        String json = mappings.toJson().toJson(JsonWriter.OutputType.json);
+        assertEquals(json, writer.toString());
+        assertTrue(json.contains("\"treshold\":0.5,\"maxValue\":1.2,\"offsets\":[0.1,0,0.02,0,"));
+
+        ControllerMappings reloaded = new ControllerMappings();
+        reloaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        reloaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        reloaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisDigital, 3));
+        reloaded.commitConfig();
+        reloaded.fillFromJson(new StringReader(json));
+        assertTrue(reloaded.getControllerMapping(controller).isCalibrated());
+        assertEquals(.1f, reloaded.getControllerMapping(controller).getAxisRestingOffset(0), 0.0001f);
+        StringWriter reloadedWriter = new StringWriter();
+        reloaded.writeJson(reloadedWriter);
+        assertEquals(json, reloadedWriter.toString());
+    }
+
+    @Test
+    public void testAxisProcessor() {
+        AxisProcessor processor = new AxisProcessor().setDeadzone(.2f, .2f);
+        assertEquals(0, processor.process(.15f), 0.0001f);
+        assertEquals(.5f, processor.process(.5f), 0.01f);
+        assertEquals(-1f, processor.process(-.85f), 0.0001f);
+        processor.setExponential(2);
+        assertEquals(.25f, processor.process(.5f), 0.01f);
+        processor.setCurve(new float[]{0, .2f, 1});
+        assertEquals(.2f, processor.process(.5f), 0.01f);
+        processor.setInverted(true).setScale(2);
+        assertEquals(-.4f, processor.process(.5f), 0.01f);
+
+        ControllerMappings mappings = new ControllerMappings();
+        ConfiguredInput horizontal = new ConfiguredInput(ConfiguredInput.Type.axis, 2);
+        horizontal.axisProcessor = new AxisProcessor().setDeadzone(.2f, 0).setSmoothing(.5f);
+        mappings.addConfiguredInput(horizontal);
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.axisValues[1] = 1f;
+        controller.pressedButton = -1;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 2));
+
+        MappedController mappedController = new MappedController(controller, mappings);
+        TestControllerAdapter adapter = new TestControllerAdapter(mappings);
+
+        // polled and event values are the same
+        float[] values = {.1f, .6f, .6f, .6f, 0};
+        for (float value : values) {
+            controller.axisValues[1] = value;
+            mappedController.poll();
+            adapter.axisMoved(controller, 1, value);
+            assertEquals(mappedController.getConfiguredAxisValue(2), adapter.lastAxisValue, 0.0001f);
+        }
+
+        controller.axisValues[1] = .1f;
+        mappedController.poll();
+        assertEquals(0, mappedController.getConfiguredAxisValue(2), 0.0001f);
+        controller.axisValues[1] = .6f;
+        mappedController.poll();
+        assertEquals(.25f, mappedController.getConfiguredAxisValue(2), 0.01f);
+        mappedController.poll();
+        assertEquals(.375f, mappedController.getConfiguredAxisValue(2), 0.01f);
+
+        // digital axis are not smoothed, neither polled nor by events. A scale above 1 would let smoothing apply
+        mappings = new ControllerMappings();
+        ConfiguredInput digital = new ConfiguredInput(ConfiguredInput.Type.axisDigital, 3);
+        digital.axisProcessor = new AxisProcessor().setScale(2).setSmoothing(.5f);
+        mappings.addConfiguredInput(digital);
+        mappings.commitConfig();
+        mappings.recordMapping(controller, 3, -1, 1);
+
+        mappedController = new MappedController(controller, mappings);
+        MappedControllerGroup group = new MappedControllerGroup(mappings, 1);
+        group.setController(0, controller);
+        adapter = new TestControllerAdapter(mappings);
+        adapter.lastAxisValue = 0;
+        values = new float[]{.9f, .9f, .6f, .9f, .3f, -.9f, -.6f};
+        for (float value : values) {
+            controller.axisValues[1] = value;
+            mappedController.poll();
+            group.poll();
+            adapter.axisMoved(controller, 1, value);
+            assertEquals(adapter.lastAxisValue, mappedController.getConfiguredAxisValue(3), 0.0001f);
+            assertEquals(adapter.lastAxisValue, group.getConfiguredAxisValue(0, 3), 0.0001f);
+            assertEquals(0, adapter.lastAxisValue % 1, 0.0001f);
+        }
+    }
+
+    @Test
+    public void testDigitalAxisHysteresis() {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisDigital, 3));
+        mappings.commitConfig();
+        mappings.analogToDigitalEnterTreshold = .8f;
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.axisValues[1] = 1f;
+        controller.pressedButton = -1;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 3));
+
+        TestControllerAdapter adapter = new TestControllerAdapter(mappings);
+        MappedController mappedController = new MappedController(controller, mappings);
+        ControllerToInputAdapter inputAdapter = new ControllerToInputAdapter(mappings);
+        assertEquals(.8f, inputAdapter.analogToDigitalEnterTreshold, 0.0001f);
+
+        // a stick resting near the treshold does not flip
+        float[] values = {.6f, .45f, .7f, .85f, .6f, .75f, .55f, .3f, -.6f, -.9f};
+        float[] expected = {0, 0, 0, 1, 1, 1, 1, 0, 0, -1};
+        for (int i = 0; i < values.length; i++) {
+            controller.axisValues[1] = values[i];
+            adapter.axisMoved(controller, 1, values[i]);
+            mappedController.poll();
+            assertEquals(expected[i], mappedController.getConfiguredAxisValue(3), 0.0001f);
+            assertEquals(expected[i], adapter.lastAxisValue, 0.0001f);
+        }
+
+        // only changes are reported
+        assertEquals(3, adapter.axisEventCount);
+    }
+
+    @Test
+    public void testCompiledMapping() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisAnalog, 30));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.pressedButton = 100;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 1));
+        CompiledMapping compiledMapping = mappings.getControllerMapping(controller).getCompiledMapping();
+        assertEquals(3, compiledMapping.getSlotCount());
+        assertEquals(-1, compiledMapping.getSlot(4));
+
+        // a rebind emits a new table
+        controller.pressedButton = 3;
+        assertEquals(ControllerMappings.RecordResult.need_second_button, mappings.recordMapping(controller, 2));
+        controller.pressedButton = 4;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 2));
+        controller.pressedButton = -1;
+        controller.axisValues[2] = .9f;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 30));
+        CompiledMapping rebound = mappings.getControllerMapping(controller).getCompiledMapping();
+        assertTrue(compiledMapping != rebound);
+
+        int buttonSlot = rebound.getSlot(1);
+        int axisSlot = rebound.getSlot(2);
+        int analogSlot = rebound.getSlot(30);
+        assertEquals(buttonSlot, rebound.getSlotForButton(100));
+        assertEquals(CompiledMapping.TYPE_BUTTON, rebound.getType(buttonSlot));
+        assertEquals(axisSlot, rebound.getSlotForButton(3));
+        assertEquals(axisSlot, rebound.getSlotForButton(4));
+        assertFalse(rebound.isReverseButton(3));
+        assertTrue(rebound.isReverseButton(4));
+        assertEquals(analogSlot, rebound.getSlotForAxis(2));
+        assertEquals(CompiledMapping.TYPE_AXIS_ANALOG, rebound.getType(analogSlot));
+        assertEquals(-1, rebound.getSlotForButton(5));
+        assertEquals(-1, rebound.getSlotForAxis(0));
+    }
+
+    @Test
+    public void testConcurrentRebind() throws InterruptedException {
+        final ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 2));
+        mappings.commitConfig();
+
+        final MockedController controller = new MockedController();
+        controller.axisValues = new float[0];
+        mappings.recordMapping(controller, 1, 100, -1);
+        mappings.recordMapping(controller, 2, 101, -1);
+        final JsonValue json = mappings.toJson();
+        final int buttonSlot = mappings.getConfiguredSlot(1);
+
+        final AtomicBoolean failed = new AtomicBoolean();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!done.get()) {
+                        ControllerMappings.MappedInputs mapping = mappings.getControllerMapping(controller);
+                        if (mapping == null)
+                            continue;
+                        // a published table is either the old or the new one, never one in between
+                        int slot = mapping.getCompiledMapping().getSlotForButton(100);
+                        if (slot != -1 && slot != buttonSlot)
+                            failed.set(true);
+                        // the lookup tables are published the same way
+                        ConfiguredInput configuredInput = mapping.getConfiguredFromButton(100);
+                        if (configuredInput != null && configuredInput.inputId != 1)
+                            failed.set(true);
+                        ControllerMappings.MappedInput mappedInput = mapping.getMappedInput(2);
+                        if (mappedInput != null && mappedInput.getButtonIndex() != 101)
+                            failed.set(true);
+                    }
+                } catch (RuntimeException e) {
+                    failed.set(true);
+                }
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < 2000; i++) {
+            mappings.resetMappings(controller);
+            mappings.recordMapping(controller, 1, 100, -1);
+            mappings.fillFromJson(json);
+        }
+        done.set(true);
+        reader.join();
+
+        assertFalse(failed.get());
+        assertEquals(buttonSlot, mappings.getControllerMapping(controller).getCompiledMapping()
+                .getSlotForButton(100));
+    }
+
+    @Test
+    public void testAdapterFollowsRebind() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 2));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.pressedButton = 5;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 1));
+        JsonValue json = mappings.toJson();
+
+        TestControllerAdapter controllerAdapter = new TestControllerAdapter(mappings);
+        assertTrue(controllerAdapter.buttonDown(controller, 5));
+        assertEquals(1, controllerAdapter.lastEventId);
+        assertFalse(controllerAdapter.buttonDown(controller, 6));
+
+        // a newly recorded button is recognized without any refresh
+        controller.pressedButton = 6;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 2));
+        assertTrue(controllerAdapter.buttonDown(controller, 6));
+        assertEquals(2, controllerAdapter.lastEventId);
+
+        mappings.resetMappings(controller);
+        assertFalse(controllerAdapter.buttonDown(controller, 5));
+
+        mappings.fillFromJson(json);
+        assertTrue(controllerAdapter.buttonDown(controller, 5));
+        assertFalse(controllerAdapter.buttonDown(controller, 6));
+    }
+
+    @Test
+    public void testControllerToInputAdapter() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.commitConfig();
+
+        MockedController controller1 = new MockedController();
+        controller1.axisValues = new float[1];
+        MockedController controller2 = new MockedController();
+        mappings.recordMapping(controller1, 1, 5, -1);
+        mappings.recordMapping(controller1, 2, -1, 0);
+
+        final StringBuilder keys = new StringBuilder();
+        ControllerToInputAdapter inputAdapter = new ControllerToInputAdapter(mappings);
+        inputAdapter.addButtonMapping(1, 300);
+        inputAdapter.addAxisMapping(2, 21, 22);
+        inputAdapter.setInputProcessor(new InputAdapter() {
+            @Override
+            public boolean keyDown(int keycode) {
+                keys.append('d').append(keycode).append(' ');
+                return true;
+            }
+
+            @Override
+            public boolean keyUp(int keycode) {
+                keys.append('u').append(keycode).append(' ');
+                return true;
+            }
+        });
+
+        assertTrue(inputAdapter.buttonDown(controller1, 5));
+        assertTrue(inputAdapter.buttonUp(controller1, 5));
+        assertEquals("d300 u300 ", keys.toString());
+
+        // both controllers have their own pressed state
+        keys.setLength(0);
+        inputAdapter.axisMoved(controller1, 0, -1);
+        inputAdapter.axisMoved(controller2, 0, 1);
+        inputAdapter.axisMoved(controller1, 0, -.9f);
+        inputAdapter.axisMoved(controller2, 0, -1);
+        inputAdapter.axisMoved(controller1, 0, 0);
+        assertEquals("d21 d22 d21 u22 u21 ", keys.toString());
+
+        // keys are pressed at the treshold, hysteresis is opt-in
+        keys.setLength(0);
+        inputAdapter.axisMoved(controller1, 0, .6f);
+        inputAdapter.axisMoved(controller1, 0, .4f);
+        inputAdapter.analogToDigitalEnterTreshold = .8f;
+        inputAdapter.axisMoved(controller1, 0, .6f);
+        inputAdapter.axisMoved(controller1, 0, .9f);
+        inputAdapter.axisMoved(controller1, 0, .6f);
+        inputAdapter.axisMoved(controller1, 0, .4f);
+        inputAdapter.analogToDigitalEnterTreshold = 0;
+        assertEquals("d22 u22 d22 u22 ", keys.toString());
+
+        // a controller taking over the slot of a disconnected one starts without pressed keys
+        keys.setLength(0);
+        inputAdapter.disconnected(controller2);
+        MockedController controller3 = new MockedController();
+        inputAdapter.axisMoved(controller3, 0, 0);
+        assertEquals("", keys.toString());
+
+        // held axis keys are repeated, the interval is reduced down to the minimum
+        keys.setLength(0);
+        inputAdapter.setKeyRepeat(.5f, .2f, .1f, .5f);
+        inputAdapter.axisMoved(controller1, 0, 1);
+        inputAdapter.update(.4f);
+        assertEquals("d22 ", keys.toString());
+        inputAdapter.update(.1f);
+        inputAdapter.update(.1f);
+        inputAdapter.update(.1f);
+        inputAdapter.update(.1f);
+        inputAdapter.update(.1f);
+        assertEquals("d22 d22 d22 d22 d22 ", keys.toString());
+        inputAdapter.axisMoved(controller1, 0, 0);
+        inputAdapter.update(1f);
+        assertEquals("d22 d22 d22 d22 d22 u22 ", keys.toString());
+
+        // buttons only if activated
+        keys.setLength(0);
+        inputAdapter.buttonDown(controller1, 5);
+        inputAdapter.update(1f);
+        inputAdapter.buttonUp(controller1, 5);
+        inputAdapter.setRepeatButtonKeys(true);
+        inputAdapter.buttonDown(controller1, 5);
+        inputAdapter.update(1f);
+        inputAdapter.buttonUp(controller1, 5);
+        inputAdapter.update(1f);
+        assertEquals("d300 u300 d300 d300 u300 ", keys.toString());
+    }
+
+    @Test
+    public void testAxisFilterAndCoalescing() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 5));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisAnalog, 6));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.axisValues[0] = .9f;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 5));
+        controller.axisValues[0] = 0;
+        controller.axisValues[1] = .9f;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 6));
+
+        TestControllerAdapter controllerAdapter = new TestControllerAdapter(mappings);
+        controllerAdapter.setAxisDeadzone(.1f).setAxisChangeEpsilon(.05f);
+
+        assertFalse(controllerAdapter.axisMoved(controller, 0, .05f));
+        assertTrue(controllerAdapter.axisMoved(controller, 0, .3f));
+        assertFalse(controllerAdapter.axisMoved(controller, 0, .32f));
+        assertTrue(controllerAdapter.axisMoved(controller, 0, .4f));
+        assertTrue(controllerAdapter.axisMoved(controller, 0, .02f));
+        assertEquals(0, controllerAdapter.lastAxisValue, .001f);
+        assertEquals(3, controllerAdapter.axisEventCount);
+
+        // coalescing only reports the latest value of every axis on flush
+        controllerAdapter.setCoalesceAxisEvents(true);
+        controllerAdapter.axisEventCount = 0;
+        for (int i = 1; i <= 10; i++) {
+            controllerAdapter.axisMoved(controller, 0, i / 10f);
+            controllerAdapter.axisMoved(controller, 1, -i / 10f);
+        }
+        assertEquals(0, controllerAdapter.axisEventCount);
+        controllerAdapter.flush();
+        assertEquals(2, controllerAdapter.axisEventCount);
+        controllerAdapter.flush();
+        assertEquals(2, controllerAdapter.axisEventCount);
+
+        // a filter set later compares against the values reported without it
+        controllerAdapter = new TestControllerAdapter(mappings);
+        assertTrue(controllerAdapter.axisMoved(controller, 1, .5f));
+        controllerAdapter.setAxisChangeEpsilon(.1f);
+        assertFalse(controllerAdapter.axisMoved(controller, 1, .52f));
+        assertEquals(1, controllerAdapter.axisEventCount);
+    }
+
+    @Test
+    public void testCoalescedAxisBeforeButton() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisAnalog, 2));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.uniqueId = "pad";
+        MockedController otherController = new MockedController();
+        otherController.uniqueId = "other";
+        mappings.recordMapping(controller, 1, 5, -1);
+        mappings.recordMapping(controller, 2, -1, 0);
+
+        final StringBuilder events = new StringBuilder();
+        MappedControllerAdapter adapter = new MappedControllerAdapter(mappings) {
+            @Override
+            public boolean configuredButtonDown(Controller controller, int buttonId) {
+                events.append(controller.getUniqueId()).append(" d").append(buttonId).append(' ');
+                return true;
+            }
+
+            @Override
+            public boolean configuredAxisMoved(Controller controller, int axisId, float value) {
+                events.append(controller.getUniqueId()).append(" a").append(axisId).append('=').append(value)
+                        .append(' ');
+                return true;
+            }
+        };
+        adapter.setCoalesceAxisEvents(true);
+
+        // an axis moved before a button press of the same controller is reported before it
+        adapter.axisMoved(controller, 0, .25f);
+        adapter.axisMoved(otherController, 0, .75f);
+        adapter.axisMoved(controller, 0, .5f);
+        adapter.buttonDown(controller, 5);
+        assertEquals("pad a2=0.5 pad d1 ", events.toString());
+        adapter.flush();
+        assertEquals("pad a2=0.5 pad d1 other a2=0.75 ", events.toString());
+    }
+
+    @Test
+    public void testPolling() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.pressedButton = 3;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 1));
+        controller.pressedButton = -1;
+        controller.axisValues[1] = .8f;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 2));
+
+        MappedController mappedController = new MappedController(controller, mappings);
+        controller.pressedButton = 3;
+        mappedController.poll();
+        assertTrue(mappedController.isButtonPressed(1));
+        assertTrue(mappedController.isButtonJustPressed(1));
+        assertEquals(.8f, mappedController.getConfiguredAxisValue(2), .01f);
+
+        // snapshot does not change until next poll
+        controller.pressedButton = -1;
+        controller.axisValues[1] = -.5f;
+        assertTrue(mappedController.isButtonPressed(1));
+        assertEquals(.8f, mappedController.getConfiguredAxisValue(2), .01f);
+
+        mappedController.poll();
+        assertFalse(mappedController.isButtonPressed(1));
+        assertFalse(mappedController.isButtonJustPressed(1));
+        assertTrue(mappedController.isButtonJustReleased(1));
+        assertEquals(-.5f, mappedController.getConfiguredAxisValue(2), .01f);
+        assertEquals(.8f, mappedController.getPreviousConfiguredAxisValue(2), .01f);
+
+        mappedController.poll();
+        assertFalse(mappedController.isButtonJustReleased(1));
+        assertFalse(mappedController.isButtonJustPressed(5));
+    }
+
+    @Test
+    public void testControllerGroup() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.commitConfig();
+
+        MockedController[] controllers = new MockedController[3];
+        for (int i = 0; i < controllers.length; i++) {
+            controllers[i] = new MockedController();
+            controllers[i].axisValues = new float[3];
+        }
+        controllers[0].pressedButton = 7;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controllers[0], 1));
+        controllers[0].pressedButton = -1;
+        controllers[0].axisValues[2] = 1f;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controllers[0], 2));
+        controllers[0].axisValues[2] = 0;
+
+        MappedControllerGroup group = new MappedControllerGroup(mappings, 4);
+        for (int i = 0; i < controllers.length; i++)
+            group.setController(i, controllers[i]);
+
+        group.poll();
+        assertFalse(group.isAnyButtonPressed(1));
+
+        controllers[2].pressedButton = 7;
+        controllers[1].axisValues[2] = -.6f;
+        group.poll();
+        assertTrue(group.isAnyButtonPressed(1));
+        assertTrue(group.isAnyButtonJustPressed(1));
+        assertEquals(1L << 2, group.getPlayersPressing(1));
+        assertTrue(group.getPlayer(2).isButtonJustPressed(1));
+        assertFalse(group.getPlayer(0).isButtonPressed(1));
+        assertEquals(-.6f, group.getPlayer(1).getConfiguredAxisValue(2), .01f);
+        assertEquals(0, group.getConfiguredAxisValue(3, 2), .01f);
+
+        group.poll();
+        assertTrue(group.isAnyButtonPressed(1));
+        assertFalse(group.isAnyButtonJustPressed(1));
+        assertEquals(-.6f, group.getPreviousConfiguredAxisValue(1, 2), .01f);
+        assertEquals(1, group.getPlayerIndex(controllers[1]));
+    }
+
+    @Test
+    public void testQueuedDispatch() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.pressedButton = 3;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 1));
+        controller.pressedButton = -1;
+        controller.axisValues[1] = .8f;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 2));
+
+        TestControllerAdapter controllerAdapter = new TestControllerAdapter(mappings);
+        ConfiguredEventQueue queue = new ConfiguredEventQueue(3);
+        assertEquals(4, queue.getCapacity());
+        controllerAdapter.setEventQueue(queue);
+
+        assertTrue(controllerAdapter.buttonDown(controller, 3));
+        assertTrue(controllerAdapter.axisMoved(controller, 1, .3f));
+        assertTrue(controllerAdapter.axisMoved(controller, 1, .4f));
+        assertFalse(controllerAdapter.axisMoved(controller, 2, .4f));
+        assertEquals(-1, controllerAdapter.lastEventId);
+        assertEquals(3, queue.size());
+
+        assertEquals(3, controllerAdapter.drainEventQueue());
+        assertEquals(2, controllerAdapter.lastEventId);
+        assertEquals(.4f, controllerAdapter.lastAxisValue, .001f);
+        assertEquals(2, controllerAdapter.axisEventCount);
+        assertEquals(0, queue.size());
+
+        // overflow drops newest events
+        for (int i = 0; i < 6; i++)
+            controllerAdapter.axisMoved(controller, 1, i / 10f);
+        assertEquals(2, queue.getDroppedCount());
+        assertEquals(4, controllerAdapter.drainEventQueue());
+    }
+
+    @Test
+    public void testQueuedDispatchAfterReconnect() {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.commitConfig();
+
+        MockedController first = new MockedController();
+        MockedController second = new MockedController();
+        mappings.recordMapping(first, 1, 3, -1);
+
+        final List<Controller> controllers = new ArrayList<>();
+        final List<Integer> players = new ArrayList<>();
+        MappedControllerAdapter adapter = new MappedControllerAdapter(mappings) {
+            @Override
+            public boolean configuredButtonDown(Controller controller, int buttonId) {
+                controllers.add(controller);
+                return true;
+            }
+
+            @Override
+            public boolean playerButtonDown(int player, int buttonId) {
+                players.add(player);
+                return super.playerButtonDown(player, buttonId);
+            }
+        };
+        adapter.setEventQueue(new ConfiguredEventQueue(8));
+
+        // the second controller takes the slot of the first one before the queue is drained
+        adapter.buttonDown(first, 3);
+        adapter.disconnected(first);
+        adapter.buttonDown(second, 3);
+        adapter.disconnected(second);
+        adapter.buttonDown(first, 3);
+        assertEquals(0, adapter.getControllerSlot(first));
+        assertEquals(3, adapter.drainEventQueue());
+        assertEquals(Arrays.<Controller>asList(first, second, first), controllers);
+
+        // player slots are resolved when the event is given
+        controllers.clear();
+        PlayerSlots playerSlots = new PlayerSlots(2);
+        adapter.setPlayerSlots(playerSlots);
+        playerSlots.join(first);
+        playerSlots.join(second);
+        adapter.buttonDown(second, 3);
+        adapter.disconnected(second);
+        adapter.disconnected(first);
+        playerSlots.join(second);
+        assertEquals(1, adapter.drainEventQueue());
+        assertEquals(Arrays.asList(1), players);
+        assertEquals(Arrays.<Controller>asList(second), controllers);
+    }
+
+    @Test
+    public void testMetrics() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisAnalog, 2));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[2];
+        mappings.recordMapping(controller, 1, 5, -1);
+        mappings.recordMapping(controller, 2, -1, 1);
+
+        MappingMetrics metrics = new MappingMetrics();
+        TestControllerAdapter controllerAdapter = new TestControllerAdapter(mappings);
+        controllerAdapter.setAxisChangeEpsilon(.1f);
+        controllerAdapter.setMetrics(metrics);
+
+        controllerAdapter.buttonDown(controller, 5);
+        controllerAdapter.buttonDown(controller, 6);
+        controllerAdapter.axisMoved(controller, 1, .5f);
+        controllerAdapter.axisMoved(controller, 1, .55f);
+        controllerAdapter.axisMoved(controller, 0, .5f);
+
+        assertEquals(2, metrics.getCount(MappingMetrics.EVENTS_DISPATCHED));
+        assertEquals(2, metrics.getCount(MappingMetrics.EVENTS_UNMAPPED));
+        assertEquals(1, metrics.getCount(MappingMetrics.EVENTS_FILTERED));
+        assertEquals(5, metrics.getEventCount());
+        assertEquals(2, metrics.getTotalCount(MappingMetrics.HISTOGRAM_DISPATCH));
+        assertTrue(metrics.getPercentileNanos(MappingMetrics.HISTOGRAM_DISPATCH, .5f) > 0);
+
+        MappedController mappedController = new MappedController(controller, mappings);
+        mappedController.setMetrics(metrics);
+        mappedController.poll();
+        assertEquals(1, metrics.getCount(MappingMetrics.POLLS));
+
+        assertEquals(0, MappingMetrics.getBucket(999));
+        assertEquals(1, MappingMetrics.getBucket(1000));
+        assertEquals(2, MappingMetrics.getBucket(2000));
+        assertEquals(MappingMetrics.BUCKET_COUNT - 1, MappingMetrics.getBucket(Long.MAX_VALUE));
+
+        final MappingMetrics reported = new MappingMetrics();
+        metrics.setSink(new MappingMetrics.MetricsSink() {
+            @Override
+            public void report(MappingMetrics snapshot) {
+                snapshot.snapshot(reported);
+            }
+        });
+        metrics.publish();
+        assertEquals(2, reported.getCount(MappingMetrics.EVENTS_DISPATCHED));
+        assertEquals(0, metrics.getEventCount());
+        assertEquals(0, metrics.getTotalCount(MappingMetrics.HISTOGRAM_POLL));
+    }
+
+    @Test
+    public void testRecordAndReplay() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        controller.axisValues = new float[3];
+        controller.pressedButton = 3;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 1));
+        controller.pressedButton = -1;
+        controller.axisValues[1] = .8f;
+        assertEquals(ControllerMappings.RecordResult.recorded, mappings.recordMapping(controller, 2));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(Channels.newChannel(out));
+        TestControllerAdapter recordingAdapter = new TestControllerAdapter(mappings);
+        recordingAdapter.setInputRecorder(recorder);
+        recordingAdapter.buttonDown(controller, 3);
+        recordingAdapter.axisMoved(controller, 1, .5f);
+        recordingAdapter.axisMoved(controller, 1, -.25f);
+
+        // polls only record changes
+        MappedController mappedController = new MappedController(controller, mappings);
+        mappedController.setInputRecorder(recorder);
+        mappedController.poll();
+        controller.pressedButton = 3;
+        mappedController.poll();
+        mappedController.poll();
+        assertEquals(4, recorder.getEventCount());
+        recorder.close();
+
+        TestControllerAdapter replayAdapter = new TestControllerAdapter(mappings);
+        InputReplayer replayer = new InputReplayer(ByteBuffer.wrap(out.toByteArray()), replayAdapter);
+        assertEquals(4, replayer.replayAll());
+        assertTrue(replayer.isFinished());
+        assertEquals(1, replayAdapter.lastEventId);
+        assertEquals(2, replayAdapter.axisEventCount);
+        assertEquals(-.25f, replayAdapter.lastAxisValue, .0001f);
+
+        replayer.rewind();
+        assertEquals(0, replayer.getReplayedCount());
+        assertFalse(replayer.isFinished());
+
+        // replayed events take the adapter's way: filters, queue and metrics apply
+        TestControllerAdapter queuedAdapter = new TestControllerAdapter(mappings);
+        MappingMetrics metrics = new MappingMetrics();
+        queuedAdapter.setAxisChangeEpsilon(1f).setEventQueue(new ConfiguredEventQueue(8)).setMetrics(metrics);
+        replayer = new InputReplayer(ByteBuffer.wrap(out.toByteArray()), queuedAdapter);
+        assertEquals(4, replayer.replayAll());
+        assertEquals(2, metrics.getCount(MappingMetrics.EVENTS_FILTERED));
+        assertEquals(-1, queuedAdapter.lastEventId);
+        queuedAdapter.drainEventQueue();
+        assertEquals(1, queuedAdapter.lastEventId);
+        assertEquals(0, queuedAdapter.axisEventCount);
+    }
+
+    @Test
+    public void testReplayRewindAndTruncation() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        mappings.recordMapping(controller, 1, 3, -1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(Channels.newChannel(out));
+        recorder.recordButtonDown(controller, 1);
+        recorder.recordButtonUp(controller, 1);
+        recorder.close();
+        byte[] recording = out.toByteArray();
+
+        // the replayed controller is kept over rewinds, so the adapter does not see new controllers
+        TestControllerAdapter adapter = new TestControllerAdapter(mappings);
+        adapter.setPlayerSlots(new PlayerSlots(2));
+        InputReplayer replayer = new InputReplayer(ByteBuffer.wrap(recording), adapter);
+        replayer.replayAll();
+        InputReplayer.ReplayedController replayed = replayer.getController(0);
+        adapter.connected(replayed);
+        for (int i = 0; i < 5; i++) {
+            replayer.rewind();
+            assertEquals(2, replayer.replayAll());
+            assertTrue(replayed == replayer.getController(0));
+            assertEquals(0, adapter.getControllerSlot(replayed));
+            assertEquals(1, adapter.getPlayerSlots().getPlayerCount());
+        }
+        assertEquals(1, adapter.lastEventId);
+
+        // a log cut within the last event, like after a crash, is reported
+        replayer = new InputReplayer(ByteBuffer.wrap(Arrays.copyOf(recording, recording.length - 3)), adapter);
+        try {
+            replayer.replayAll();
+            assertTrue("Truncated recording not reported", false);
+        } catch (GdxRuntimeException e) {
+            assertTrue(e.getMessage().contains("truncated"));
+        }
+        assertEquals(1, replayer.getReplayedCount());
+
+        // a controller slot out of range as well
+        byte[] corrupted = recording.clone();
+        corrupted[6] = -1;
+        try {
+            new InputReplayer(ByteBuffer.wrap(corrupted), adapter).replayAll();
+            assertTrue("Invalid controller slot not reported", false);
+        } catch (GdxRuntimeException e) {
+            assertTrue(e.getMessage().contains("invalid"));
+        }
+    }
+
+    @Test
+    public void testRecorderReusesSlots() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.commitConfig();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputRecorder recorder = new InputRecorder(Channels.newChannel(out));
+        TestControllerAdapter recordingAdapter = new TestControllerAdapter(mappings);
+        recordingAdapter.setInputRecorder(recorder);
+
+        // reconnects create new instances, their slots are reused
+        for (int i = 0; i < 2 * InputRecorder.MAX_CONTROLLERS; i++) {
+            MockedController controller = new MockedController();
+            controller.connected = true;
+            mappings.recordMapping(controller, 1, 3, -1);
+            recordingAdapter.connected(controller);
+            recordingAdapter.buttonDown(controller, 3);
+            recordingAdapter.disconnected(controller);
+        }
+        assertEquals(2 * InputRecorder.MAX_CONTROLLERS, recorder.getEventCount());
+        recorder.close();
+
+        TestControllerAdapter replayAdapter = new TestControllerAdapter(mappings);
+        InputReplayer replayer = new InputReplayer(ByteBuffer.wrap(out.toByteArray()), replayAdapter);
+        assertEquals(2 * InputRecorder.MAX_CONTROLLERS, replayer.replayAll());
+        assertTrue(replayer.getController(1) == null);
+
+        // more connected controllers than slots are reported instead of dropping their events
+        recorder = new InputRecorder(Channels.newChannel(new ByteArrayOutputStream()));
+        for (int i = 0; i < InputRecorder.MAX_CONTROLLERS; i++) {
+            MockedController controller = new MockedController();
+            controller.connected = true;
+            recorder.recordButtonDown(controller, 1);
+        }
+        MockedController controller = new MockedController();
+        controller.connected = true;
+        try {
+            recorder.recordButtonDown(controller, 1);
+            assertTrue("Too many controllers not reported", false);
+        } catch (GdxRuntimeException e) {
+            assertEquals(InputRecorder.MAX_CONTROLLERS, recorder.getEventCount());
+        }
+    }
+
+    @Test
+    public void testPlayerSlots() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.commitConfig();
+
+        MockedController[] controllers = new MockedController[3];
+        for (int i = 0; i < controllers.length; i++) {
+            controllers[i] = new MockedController();
+            controllers[i].uniqueId = "pad" + i;
+        }
+        mappings.recordMapping(controllers[0], 1, 5, -1);
+        mappings.recordMapping(controllers[0], 2, -1, 0);
+
+        final int[] lastPlayer = new int[]{-1};
+        final int[] playerEvents = new int[2];
+        PlayerSlots playerSlots = new PlayerSlots(2).setJoinPolicy(PlayerSlots.JoinPolicy.firstPress);
+        MappedControllerAdapter adapter = new MappedControllerAdapter(mappings) {
+            @Override
+            public boolean playerButtonDown(int player, int buttonId) {
+                lastPlayer[0] = player;
+                playerEvents[player]++;
+                return true;
+            }
+
+            @Override
+            public boolean playerAxisMoved(int player, int axisId, float value) {
+                lastPlayer[0] = player;
+                playerEvents[player]++;
+                return true;
+            }
+        };
+        MappingMetrics metrics = new MappingMetrics();
+        adapter.setPlayerSlots(playerSlots).setMetrics(metrics);
+
+        // events of controllers without slot are dropped, the first press joins and is consumed
+        adapter.connected(controllers[1]);
+        assertFalse(adapter.axisMoved(controllers[1], 0, 1));
+        assertTrue(adapter.buttonDown(controllers[1], 5));
+        assertEquals(-1, lastPlayer[0]);
+        assertEquals(0, playerSlots.getSlot(controllers[1]));
+        assertTrue(adapter.buttonDown(controllers[0], 6));
+        assertEquals(1, playerSlots.getSlot(controllers[0]));
+        assertEquals(3, metrics.getCount(MappingMetrics.EVENTS_NO_PLAYER));
+
+        assertTrue(adapter.buttonDown(controllers[1], 5));
+        assertEquals(0, lastPlayer[0]);
+        assertTrue(adapter.axisMoved(controllers[0], 0, .5f));
+        assertEquals(1, lastPlayer[0]);
+
+        // all slots taken
+        assertFalse(adapter.buttonDown(controllers[2], 5));
+        assertEquals(-1, playerSlots.getSlot(controllers[2]));
+
+        // a reconnecting controller gets its slot back, even if another one joined in the meantime
+        adapter.disconnected(controllers[1]);
+        assertEquals(1, playerSlots.getPlayerCount());
+        MockedController reconnected = new MockedController();
+        reconnected.uniqueId = "pad1";
+        adapter.buttonDown(controllers[2], 5);
+        assertEquals(0, playerSlots.getSlot(controllers[2]));
+        adapter.disconnected(controllers[2]);
+        adapter.buttonDown(reconnected, 5);
+        assertEquals(0, playerSlots.getSlot(reconnected));
+        assertEquals(1, playerSlots.getSlot(controllers[0]));
+
+        // join on connect
+        playerSlots.releaseAll();
+        playerSlots.setJoinPolicy(PlayerSlots.JoinPolicy.onConnect);
+        adapter.connected(controllers[2]);
+        assertEquals(0, playerSlots.getSlot(controllers[2]));
+        adapter.buttonDown(controllers[2], 5);
+        assertEquals(0, lastPlayer[0]);
+        assertEquals(2, playerEvents[0]);
+        assertEquals(1, playerEvents[1]);
+    }
+
+    @Test
+    public void testMappingCacheEviction() {
+        ControllerMappings mappings = new ControllerMappings() {
+            @Override
+            public boolean getDefaultMapping(MappedInputs defaultMapping, Controller controller) {
+                defaultMapping.putMapping(new MappedInput(1, new ControllerButton(0)));
+                return true;
+            }
+        };
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.commitConfig();
+        mappings.setMaxCachedMappings(2);
+
+        MockedController recorded = new MockedController();
+        recorded.name = "recorded";
+        mappings.recordMapping(recorded, 1, 5, -1);
+        mappings.recordMapping(recorded, 2, -1, 3);
+
+        MockedController connected = new MockedController();
+        connected.name = "connected";
+        connected.connected = true;
+        assertEquals(0, mappings.getControllerMapping(connected).getCompiledMapping().getSlotForButton(0));
+
+        // the recorded mapping is the least recently used, the connected one is kept
+        for (int i = 0; i < 5; i++) {
+            MockedController controller = new MockedController();
+            controller.name = "default" + i;
+            assertFalse(mappings.getControllerMapping(controller).checkCompleted());
+            assertEquals(2, mappings.getCachedMappingCount());
+        }
+        assertEquals(5, mappings.getCacheEvictions());
+        assertEquals(6, mappings.getCacheMisses());
+        assertTrue(mappings.getControllerMapping(connected) != null);
+        assertEquals(1, mappings.getCacheHits());
+
+        // evicted recorded mapping is still saved and recreated on use
+        assertEquals(1, mappings.toJson().size);
+        ControllerMappings.MappedInputs recreated = mappings.getControllerMapping(recorded);
+        assertTrue(recreated.isRecorded);
+        assertTrue(recreated.checkCompleted());
+        assertEquals(1, recreated.getConfiguredFromButton(5).inputId);
+        assertEquals(2, recreated.getConfiguredFromAxis(3).inputId);
+        assertEquals(1, mappings.toJson().size);
+
+        // no limit
+        mappings.setMaxCachedMappings(0);
+        for (int i = 0; i < 5; i++) {
+            MockedController controller = new MockedController();
+            controller.name = "unlimited" + i;
+            mappings.getControllerMapping(controller);
+        }
+        assertEquals(7, mappings.getCachedMappingCount());
+    }
+
+    @Test
+    public void testMappingOfSameNamedControllersNotEvicted() {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.commitConfig();
+        mappings.setMaxCachedMappings(1);
+
+        // two pads of the same model use one mapping, the adapter holds it after the first event
+        MockedController[] pads = new MockedController[2];
+        TestControllerAdapter adapter = new TestControllerAdapter(mappings);
+        for (int i = 0; i < pads.length; i++) {
+            pads[i] = new MockedController();
+            pads[i].uniqueId = "pad" + i;
+            pads[i].connected = true;
+            mappings.recordMapping(pads[i], 1, 5, -1);
+            assertTrue(adapter.buttonDown(pads[i], 5));
+        }
+
+        // the last pad disconnects, the other still uses the mapping. The new mapping of an unconnected controller
+        // is evicted instead
+        pads[1].connected = false;
+        adapter.disconnected(pads[1]);
+        MockedController other = new MockedController();
+        other.name = "other";
+        mappings.recordMapping(other, 1, 2, -1);
+        assertEquals(1, mappings.getCacheEvictions());
+        assertEquals(0, mappings.getControllerMapping(pads[0]).getCompiledMapping().getSlotForButton(5));
+        assertEquals(1, mappings.getCacheEvictions());
+
+        // once both are gone, it can be evicted
+        pads[0].connected = false;
+        other.name = "another";
+        mappings.recordMapping(other, 1, 2, -1);
+        assertEquals(2, mappings.getCacheEvictions());
+        assertEquals(1, mappings.getCachedMappingCount());
+    }
+
+    @Test
+    public void testUnmappedControllerIsCached() {
+        final int[] defaultMappingCalls = new int[1];
+        ControllerMappings mappings = new ControllerMappings() {
+            @Override
+            public boolean getDefaultMapping(MappedInputs defaultMapping, Controller controller) {
+                defaultMappingCalls[0]++;
+                return false;
+            }
+        };
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        for (int i = 0; i < 3; i++)
+            assertTrue(mappings.getControllerMapping(controller) == null);
+        assertEquals(1, defaultMappingCalls[0]);
+        assertEquals(1, mappings.getCacheMisses());
+        assertEquals(2, mappings.getCacheHits());
+
+        // a change of the mappings might map it
+        MockedController other = new MockedController();
+        other.name = "other";
+        mappings.recordMapping(other, 1, 2, -1);
+        assertTrue(mappings.getControllerMapping(controller) == null);
+        assertEquals(2, defaultMappingCalls[0]);
+        mappings.recordMapping(controller, 1, 2, -1);
+        assertEquals(0, mappings.getControllerMapping(controller).getCompiledMapping().getSlotForButton(2));
+    }
+
+    @Test
+    public void testMissingInputs() {
+        ControllerMappings mappings = new ControllerMappings();
+
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axis, 2));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 70));
+        for (int i = 100; i < 200; i++)
+            mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, i));
+        mappings.commitConfig();
+
+        MockedController controller = new MockedController();
+        mappings.recordMapping(controller, 1, 5, -1);
+        ControllerMappings.MappedInputs mappedInputs = mappings.getControllerMapping(controller);
+        assertEquals(102, mappedInputs.getMissingCount());
+        assertFalse(mappedInputs.isComplete());
+
+        for (int i = 100; i < 200; i++)
+            mappings.recordMapping(controller, i, i, -1);
+        // not added, button already in use
+        mappings.recordMapping(controller, 70, 5, -1);
+        assertEquals(2, mappedInputs.getMissingCount());
+
+        int missingIds = 0;
+        for (int slot = mappedInputs.nextMissingSlot(0); slot >= 0; slot = mappedInputs.nextMissingSlot(slot + 1))
+            missingIds += mappings.getConfiguredId(slot);
+        assertEquals(72, missingIds);
+
+        mappings.recordMapping(controller, 2, -1, 1);
+        mappings.recordMapping(controller, 70, 6, -1);
+        assertEquals(0, mappedInputs.getMissingCount());
+        assertTrue(mappedInputs.isComplete());
+        assertTrue(mappedInputs.checkCompleted());
+        assertEquals(-1, mappedInputs.nextMissingSlot(0));
+
+        // mappings loaded before the config was committed
+        ControllerMappings loaded = new ControllerMappings();
+        loaded.fillFromJson(mappings.toJson());
+        loaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        loaded.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 3));
+        loaded.commitConfig();
+        ControllerMappings.MappedInputs loadedInputs = loaded.getControllerMapping(controller);
+        assertEquals(1, loadedInputs.getMissingCount());
+        assertEquals(3, loaded.getConfiguredId(loadedInputs.nextMissingSlot(0)));
+
+        // reset starts over
+        mappings.resetMappings(controller);
+        mappings.recordMapping(controller, 1, 5, -1);
+        assertEquals(102, mappings.getControllerMapping(controller).getMissingCount());
+    }
+
     public static class TestControllerAdapter extends MappedControllerAdapter {
         public int lastEventId = -1;
+        public int axisEventCount;
+        public float lastAxisValue;
 
         public TestControllerAdapter(ControllerMappings mappings) {
             super(mappings);
@@ -368,6 +1742,8 @@ public class ControllerMappingsTest {
         public boolean configuredAxisMoved(Controller controller, int axisId, float value) {
             System.out.println("Axis moved: " + controller.getName() + ":" + axisId + " " + String.valueOf(value));
             lastEventId = axisId;
+            lastAxisValue = value;
+            axisEventCount++;
             return true;
         }
     }
@@ -376,6 +1752,9 @@ public class ControllerMappingsTest {
 
         public int pressedButton = -1;
         public float[] axisValues;
+        public String uniqueId;
+        public String name = "TEST";
+        public boolean connected;
 
         @Override
         public boolean getButton(int buttonCode) {
@@ -391,12 +1770,12 @@ public class ControllerMappingsTest {
 
         @Override
         public String getName() {
-            return "TEST";
+            return name;
         }
 
         @Override
         public String getUniqueId() {
-            return null;
+            return uniqueId;
         }
 
         @Override
@@ -416,7 +1795,7 @@ public class ControllerMappingsTest {
 
         @Override
         public boolean isConnected() {
-            return false;
+            return connected;
         }
 
         @Override
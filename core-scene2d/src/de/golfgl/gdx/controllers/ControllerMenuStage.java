@@ -29,6 +29,11 @@ import com.badlogic.gdx.utils.viewport.Viewport;
 public class ControllerMenuStage extends Stage {
     private static final float INITIAL_DIRECTION_EMPH_FACTOR = 3.1f;
     private final Vector2 controllerTempCoords = new Vector2();
+    // reused by focus navigation, so moving the focus does not allocate
+    private final Vector2 hitTempCoords = new Vector2();
+    private final Vector2 viewportTempCoords = new Vector2();
+    private final Vector2 focusedTempPosition = new Vector2();
+    private final Vector2 neighbourTempPosition = new Vector2();
     private Array<Actor> focusableActors = new Array<>();
     private boolean isPressed;
     private boolean focusOnTouchdown = true;
@@ -226,14 +231,14 @@ public class ControllerMenuStage extends Stage {
     }
 
     protected boolean isActorHittable(Actor actor) {
-        Vector2 center = actor.localToStageCoordinates(new Vector2(actor.getWidth() / 2, actor.getHeight() / 2));
+        Vector2 center = actor.localToStageCoordinates(hitTempCoords.set(actor.getWidth() / 2, actor.getHeight() / 2));
         Actor hitActor = hit(center.x, center.y, true);
         return hitActor != null && (hitActor.isDescendantOf(actor));
     }
 
     protected boolean isActorInViewportArea(Actor actor) {
-        Vector2 leftBottom = actor.localToStageCoordinates(new Vector2(0, 0));
-        Vector2 rightTop = actor.localToStageCoordinates(new Vector2(actor.getWidth(), actor.getHeight()));
+        Vector2 leftBottom = actor.localToStageCoordinates(hitTempCoords.set(0, 0));
+        Vector2 rightTop = actor.localToStageCoordinates(viewportTempCoords.set(actor.getWidth(), actor.getHeight()));
 
         return !(leftBottom.x > getWidth() || leftBottom.y > getHeight() || rightTop.x < 0 || rightTop.y < 0);
     }
@@ -477,7 +482,7 @@ public class ControllerMenuStage extends Stage {
 
     private Actor findNearestFocusableNeighbour(MoveFocusDirection direction) {
         Vector2 focusedPosition = focusedActor.localToStageCoordinates(
-                new Vector2(direction == MoveFocusDirection.east ? focusedActor.getWidth() :
+                focusedTempPosition.set(direction == MoveFocusDirection.east ? focusedActor.getWidth() :
                         direction == MoveFocusDirection.west ? 0 : focusedActor.getWidth() / 2,
                         direction == MoveFocusDirection.north ? focusedActor.getHeight() :
                                 direction == MoveFocusDirection.south ? 0 : focusedActor.getHeight() / 2));
@@ -492,7 +497,7 @@ public class ControllerMenuStage extends Stage {
             if (currentActor != focusedActor && isActorFocusable(currentActor)
                     && isActorInViewportArea(currentActor)) {
                 Vector2 currentActorPos = currentActor.localToStageCoordinates(
-                        new Vector2(direction == MoveFocusDirection.west ? currentActor.getWidth() :
+                        neighbourTempPosition.set(direction == MoveFocusDirection.west ? currentActor.getWidth() :
                                 direction == MoveFocusDirection.east ? 0 : currentActor.getWidth() / 2,
                                 direction == MoveFocusDirection.south ? currentActor.getHeight() :
                                         direction == MoveFocusDirection.south ? 0 : currentActor.getHeight() / 2));
@@ -0,0 +1,115 @@
+package de.golfgl.gdx.controllers;
+
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.utils.viewport.StretchViewport;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Moving the focus with keys must not produce garbage once the stage is warmed up.
+ */
+public class ControllerMenuStageAllocationTest {
+    private static final int WARMUP_ITERATIONS = 5000;
+    private static final int MEASURED_ITERATIONS = 2000;
+    private static final int[] NAVIGATION = new int[]{Input.Keys.RIGHT, Input.Keys.RIGHT, Input.Keys.DOWN,
+            Input.Keys.DOWN, Input.Keys.LEFT, Input.Keys.LEFT, Input.Keys.UP, Input.Keys.UP};
+
+    @BeforeClass
+    public static void init() {
+        Gdx.app = new HeadlessApplication(new ApplicationListener() {
+            @Override
+            public void create() {
+            }
+
+            @Override
+            public void resize(int width, int height) {
+            }
+
+            @Override
+            public void render() {
+            }
+
+            @Override
+            public void pause() {
+            }
+
+            @Override
+            public void resume() {
+            }
+
+            @Override
+            public void dispose() {
+            }
+        });
+
+        // Use Mockito to mock the OpenGL methods since we are running headlessly
+        Gdx.gl20 = Mockito.mock(GL20.class);
+        Gdx.gl = Gdx.gl20;
+    }
+
+    @Test
+    public void testKeyDownFocusNavigation() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        ControllerMenuStage stage = new ControllerMenuStage(new StretchViewport(800, 480),
+                Mockito.mock(Batch.class));
+
+        // 3x3 grid of focusable actors
+        Actor[] actors = new Actor[9];
+        for (int i = 0; i < actors.length; i++) {
+            actors[i] = new Actor();
+            actors[i].setBounds(100 + (i % 3) * 200, 300 - (i / 3) * 100, 150, 50);
+            stage.addActor(actors[i]);
+            stage.addFocusableActor(actors[i]);
+        }
+        stage.setFocusedActor(actors[0]);
+
+        stage.keyDown(Input.Keys.RIGHT);
+        assertSame(actors[1], stage.getFocusedActor());
+        stage.keyDown(Input.Keys.DOWN);
+        assertSame(actors[4], stage.getFocusedActor());
+        stage.setFocusedActor(actors[0]);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            navigateRound(stage);
+        assertSame(actors[0], stage.getFocusedActor());
+
+        long threadId = Thread.currentThread().getId();
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++)
+            navigateRound(stage);
+        long end = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        // the measurement itself might allocate
+        long baselineStart = threadMXBean.getThreadAllocatedBytes(threadId);
+        long baselineEnd = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        long allocated = (end - start) - (baselineEnd - baselineStart);
+        // less than a byte per iteration: nothing allocated in steady state
+        assertTrue("keyDown allocated " + allocated + " bytes in " + MEASURED_ITERATIONS + " iterations",
+                allocated < MEASURED_ITERATIONS);
+    }
+
+    private static void navigateRound(ControllerMenuStage stage) {
+        for (int keyCode : NAVIGATION)
+            stage.keyDown(keyCode);
+    }
+}
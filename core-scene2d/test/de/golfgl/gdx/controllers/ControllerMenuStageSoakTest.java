@@ -0,0 +1,145 @@
+package de.golfgl.gdx.controllers;
+
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.InputEvent;
+import com.badlogic.gdx.scenes.scene2d.InputListener;
+import com.badlogic.gdx.utils.viewport.StretchViewport;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import de.golfgl.gdx.controllers.mapping.ConfiguredInput;
+import de.golfgl.gdx.controllers.mapping.ControllerMappings;
+import de.golfgl.gdx.controllers.mapping.ControllerToInputAdapter;
+import de.golfgl.gdx.controllers.testsupport.VirtualController;
+import de.golfgl.gdx.controllers.testsupport.Waveform;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the focus navigation of a stage with virtual controllers sending input far faster than a human player,
+ * through a {@link ControllerToInputAdapter} like in a game.
+ */
+public class ControllerMenuStageSoakTest {
+    private static final int BUTTON_OK = 1;
+    private static final int AXIS_HORIZONTAL = 2;
+    private static final int AXIS_VERTICAL = 3;
+
+    @BeforeClass
+    public static void init() {
+        Gdx.app = new HeadlessApplication(new ApplicationListener() {
+            @Override
+            public void create() {
+            }
+
+            @Override
+            public void resize(int width, int height) {
+            }
+
+            @Override
+            public void render() {
+            }
+
+            @Override
+            public void pause() {
+            }
+
+            @Override
+            public void resume() {
+            }
+
+            @Override
+            public void dispose() {
+            }
+        });
+
+        // Use Mockito to mock the OpenGL methods since we are running headlessly
+        Gdx.gl20 = Mockito.mock(GL20.class);
+        Gdx.gl = Gdx.gl20;
+    }
+
+    @Test
+    public void testVirtualControllerSoak() {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, BUTTON_OK));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisDigital, AXIS_HORIZONTAL));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisDigital, AXIS_VERTICAL));
+        mappings.commitConfig();
+
+        final int[] keyDowns = new int[1];
+        ControllerMenuStage stage = new ControllerMenuStage(new StretchViewport(800, 480),
+                Mockito.mock(Batch.class)) {
+            @Override
+            public boolean keyDown(int keyCode) {
+                keyDowns[0]++;
+                return super.keyDown(keyCode);
+            }
+        };
+
+        // 3x3 grid of focusable actors, counting the default actions
+        final int[] actions = new int[1];
+        Actor[] actors = new Actor[9];
+        for (int i = 0; i < actors.length; i++) {
+            actors[i] = new Actor();
+            actors[i].setBounds(100 + (i % 3) * 200, 300 - (i / 3) * 100, 150, 50);
+            actors[i].addListener(new InputListener() {
+                @Override
+                public boolean touchDown(InputEvent event, float x, float y, int pointer, int button) {
+                    actions[0]++;
+                    return true;
+                }
+            });
+            stage.addActor(actors[i]);
+            stage.addFocusableActor(actors[i]);
+        }
+        stage.setFocusedActor(actors[0]);
+
+        ControllerToInputAdapter inputAdapter = new ControllerToInputAdapter(mappings);
+        inputAdapter.addButtonMapping(BUTTON_OK, Input.Keys.ENTER);
+        inputAdapter.addAxisMapping(AXIS_HORIZONTAL, Input.Keys.LEFT, Input.Keys.RIGHT);
+        inputAdapter.addAxisMapping(AXIS_VERTICAL, Input.Keys.UP, Input.Keys.DOWN);
+        inputAdapter.setInputProcessor(stage);
+
+        VirtualController[] controllers = new VirtualController[4];
+        for (int i = 0; i < controllers.length; i++) {
+            controllers[i] = new VirtualController("Virtual", "Virtual" + i, 4, 2);
+            controllers[i].addListener(inputAdapter);
+            controllers[i].connect();
+            controllers[i].setButtonWaveform(0, Waveform.square(5), 1000);
+            controllers[i].setAxisWaveform(0, Waveform.random(i), 1000);
+            controllers[i].setAxisWaveform(1, Waveform.sine(3), 1000);
+            controllers[i].setConnectionCycle(3f, .25f);
+        }
+        mappings.recordMapping(controllers[0], BUTTON_OK, 0, -1);
+        mappings.recordMapping(controllers[0], AXIS_HORIZONTAL, -1, 0);
+        mappings.recordMapping(controllers[0], AXIS_VERTICAL, -1, 1);
+
+        // ten seconds at 60 frames per second
+        long events = 0;
+        for (int frame = 0; frame < 600; frame++) {
+            for (VirtualController controller : controllers)
+                controller.update(1 / 60f);
+            stage.act(1 / 60f);
+
+            // the focus stays on one of the focusable actors
+            Actor focusedActor = stage.getFocusedActor();
+            assertTrue(focusedActor != null && stage.getFocusableActors().contains(focusedActor, true));
+        }
+        for (VirtualController controller : controllers)
+            events += controller.getEventCount();
+
+        // 1 kHz on two axes of four controllers, minus the disconnected time
+        assertTrue(events > 4 * 1000 * 10);
+        // digital axis and the button only send keys when they change
+        assertTrue(keyDowns[0] > 100);
+        assertTrue(keyDowns[0] < events);
+        assertTrue(actions[0] > 0);
+    }
+}
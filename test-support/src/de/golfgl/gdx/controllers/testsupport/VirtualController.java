@@ -0,0 +1,331 @@
+package de.golfgl.gdx.controllers.testsupport;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.controllers.ControllerListener;
+import com.badlogic.gdx.controllers.ControllerMapping;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * A {@link Controller} without hardware, for tests and load simulation.
+ * <p>
+ * Buttons and axes are set directly with {@link #setButton(int, boolean)} and {@link #setAxis(int, float)}, or follow
+ * a {@link Waveform} sampled at a configurable rate while {@link #update(float)} advances the simulated time. Samples
+ * of all inputs are emitted in time order, so an axis sampled at 1000 Hz sends 1000 events per simulated second when
+ * its value changes.
+ * <p>
+ * Like a real backend, changes are reported to the listeners added with {@link #addListener(ControllerListener)}
+ * until one of them returns true, and connects and disconnects are reported to all of them. A new virtual controller
+ * is disconnected, call {@link #connect()} first.
+ */
+public class VirtualController implements Controller {
+    private final String name;
+    private final String uniqueId;
+    private final int buttonCount;
+    private final int axisCount;
+    private final boolean[] buttons;
+    private final float[] axes;
+    private final Array<ControllerListener> listeners = new Array<>();
+
+    // scripted inputs: buttons first, then axes
+    private final Waveform[] waveforms;
+    private final double[] sampleIntervals;
+    private final double[] nextSamples;
+    private final double[] waveformStarts;
+
+    private double time;
+    private boolean connected;
+    private float connectedDuration;
+    private float disconnectedDuration;
+    private double nextConnectionChange = Double.MAX_VALUE;
+    private int playerIndex = PLAYER_IDX_UNSET;
+    private long eventCount;
+
+    public VirtualController(String name, int buttonCount, int axisCount) {
+        this(name, name, buttonCount, axisCount);
+    }
+
+    public VirtualController(String name, String uniqueId, int buttonCount, int axisCount) {
+        this.name = name;
+        this.uniqueId = uniqueId;
+        this.buttonCount = buttonCount;
+        this.axisCount = axisCount;
+        buttons = new boolean[buttonCount];
+        axes = new float[axisCount];
+
+        int inputCount = buttonCount + axisCount;
+        waveforms = new Waveform[inputCount];
+        sampleIntervals = new double[inputCount];
+        nextSamples = new double[inputCount];
+        waveformStarts = new double[inputCount];
+    }
+
+    /**
+     * connects the controller and informs the listeners. Does nothing if already connected.
+     */
+    public void connect() {
+        if (connected)
+            return;
+
+        connected = true;
+        for (int i = 0; i < listeners.size; i++)
+            listeners.get(i).connected(this);
+    }
+
+    /**
+     * disconnects the controller and informs the listeners. All buttons are released and all axes are reset
+     * without sending events, like a controller that was unplugged. Does nothing if not connected.
+     */
+    public void disconnect() {
+        if (!connected)
+            return;
+
+        connected = false;
+        for (int i = 0; i < buttonCount; i++)
+            buttons[i] = false;
+        for (int i = 0; i < axisCount; i++)
+            axes[i] = 0;
+
+        for (int i = 0; i < listeners.size; i++)
+            listeners.get(i).disconnected(this);
+    }
+
+    /**
+     * Lets {@link #update(float)} disconnect and reconnect the controller periodically.
+     *
+     * @param connectedDuration    seconds the controller stays connected
+     * @param disconnectedDuration seconds the controller stays disconnected. 0 or less disables the cycle
+     */
+    public void setConnectionCycle(float connectedDuration, float disconnectedDuration) {
+        this.connectedDuration = connectedDuration;
+        this.disconnectedDuration = disconnectedDuration;
+        nextConnectionChange = disconnectedDuration <= 0 ? Double.MAX_VALUE
+                : time + (connected ? connectedDuration : disconnectedDuration);
+    }
+
+    /**
+     * presses or releases a button. Listeners are informed if the state changed and the controller is connected.
+     */
+    public void setButton(int buttonCode, boolean pressed) {
+        if (!connected || buttons[buttonCode] == pressed)
+            return;
+
+        buttons[buttonCode] = pressed;
+        eventCount++;
+        for (int i = 0; i < listeners.size; i++) {
+            ControllerListener listener = listeners.get(i);
+            if (pressed ? listener.buttonDown(this, buttonCode) : listener.buttonUp(this, buttonCode))
+                break;
+        }
+    }
+
+    /**
+     * moves an axis. Listeners are informed if the value changed and the controller is connected.
+     */
+    public void setAxis(int axisCode, float value) {
+        if (!connected || axes[axisCode] == value)
+            return;
+
+        axes[axisCode] = value;
+        eventCount++;
+        for (int i = 0; i < listeners.size; i++)
+            if (listeners.get(i).axisMoved(this, axisCode, value))
+                break;
+    }
+
+    /**
+     * Lets the button follow the given waveform, sampled with the given rate while {@link #update(float)} is called.
+     *
+     * @param waveform waveform, or null to stop following a waveform
+     * @param rate     samples per second
+     */
+    public void setButtonWaveform(int buttonCode, Waveform waveform, float rate) {
+        if (buttonCode < 0 || buttonCode >= buttonCount)
+            throw new IllegalArgumentException("No button " + buttonCode);
+
+        setWaveform(buttonCode, waveform, rate);
+    }
+
+    /**
+     * Lets the axis follow the given waveform, sampled with the given rate while {@link #update(float)} is called.
+     *
+     * @param waveform waveform, or null to stop following a waveform
+     * @param rate     samples per second
+     */
+    public void setAxisWaveform(int axisCode, Waveform waveform, float rate) {
+        if (axisCode < 0 || axisCode >= axisCount)
+            throw new IllegalArgumentException("No axis " + axisCode);
+
+        setWaveform(buttonCount + axisCode, waveform, rate);
+    }
+
+    private void setWaveform(int input, Waveform waveform, float rate) {
+        if (waveform != null && rate <= 0)
+            throw new IllegalArgumentException("Rate must be positive");
+
+        waveforms[input] = waveform;
+        if (waveform != null) {
+            sampleIntervals[input] = 1d / rate;
+            nextSamples[input] = time;
+            waveformStarts[input] = time;
+        }
+    }
+
+    /**
+     * Advances the simulated time, samples all waveforms that are due and applies the connection cycle
+     *
+     * @param delta seconds
+     */
+    public void update(float delta) {
+        double endTime = time + delta;
+
+        while (true) {
+            int nextInput = -1;
+            double nextTime = endTime;
+            for (int i = 0; i < waveforms.length; i++) {
+                if (waveforms[i] != null && (nextSamples[i] < nextTime
+                        || nextInput < 0 && nextSamples[i] == nextTime)) {
+                    nextInput = i;
+                    nextTime = nextSamples[i];
+                }
+            }
+
+            if (nextConnectionChange <= nextTime) {
+                time = nextConnectionChange;
+                if (connected) {
+                    disconnect();
+                    nextConnectionChange = time + disconnectedDuration;
+                } else {
+                    connect();
+                    nextConnectionChange = time + connectedDuration;
+                }
+                continue;
+            }
+
+            if (nextInput < 0)
+                break;
+
+            time = nextTime;
+            if (connected)
+                sample(nextInput);
+            nextSamples[nextInput] += sampleIntervals[nextInput];
+        }
+
+        time = endTime;
+    }
+
+    private void sample(int input) {
+        float value = waveforms[input].getValue(time - waveformStarts[input]);
+        if (input < buttonCount)
+            setButton(input, value > .5f);
+        else
+            setAxis(input - buttonCount, Math.max(-1, Math.min(1, value)));
+    }
+
+    /**
+     * @return simulated seconds passed by {@link #update(float)}
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return number of button and axis changes sent to the listeners so far
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public boolean getButton(int buttonCode) {
+        return buttonCode >= 0 && buttonCode < buttonCount && buttons[buttonCode];
+    }
+
+    @Override
+    public float getAxis(int axisCode) {
+        return axisCode >= 0 && axisCode < axisCount ? axes[axisCode] : 0;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    @Override
+    public int getMinButtonIndex() {
+        return 0;
+    }
+
+    @Override
+    public int getMaxButtonIndex() {
+        return buttonCount - 1;
+    }
+
+    @Override
+    public int getAxisCount() {
+        return axisCount;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public boolean canVibrate() {
+        return false;
+    }
+
+    @Override
+    public boolean isVibrating() {
+        return false;
+    }
+
+    @Override
+    public void startVibration(int duration, float strength) {
+
+    }
+
+    @Override
+    public void cancelVibration() {
+
+    }
+
+    @Override
+    public boolean supportsPlayerIndex() {
+        return true;
+    }
+
+    @Override
+    public int getPlayerIndex() {
+        return playerIndex;
+    }
+
+    @Override
+    public void setPlayerIndex(int index) {
+        playerIndex = index;
+    }
+
+    /**
+     * @return null, a virtual controller has no standard mapping
+     */
+    @Override
+    public ControllerMapping getMapping() {
+        return null;
+    }
+
+    @Override
+    public void addListener(ControllerListener listener) {
+        if (!listeners.contains(listener, true))
+            listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(ControllerListener listener) {
+        listeners.removeValue(listener, true);
+    }
+}
@@ -0,0 +1,103 @@
+package de.golfgl.gdx.controllers.testsupport;
+
+import java.util.Random;
+
+/**
+ * Value of a virtual controller input over time. Axis values are in the range -1 to 1, buttons are pressed while
+ * the value is above 0.5.
+ * <p>
+ * Use the factory methods for the common shapes or extend this class for your own.
+ */
+public abstract class Waveform {
+
+    /**
+     * @param time seconds since the waveform was assigned to an input
+     * @return value of the input at the given time
+     */
+    public abstract float getValue(double time);
+
+    /**
+     * @return waveform that always returns the given value
+     */
+    public static Waveform constant(final float value) {
+        return new Waveform() {
+            @Override
+            public float getValue(double time) {
+                return value;
+            }
+        };
+    }
+
+    /**
+     * @return sine wave between -1 and 1 with the given frequency in Hz
+     */
+    public static Waveform sine(final float frequency) {
+        return new Waveform() {
+            @Override
+            public float getValue(double time) {
+                return (float) Math.sin(2 * Math.PI * frequency * time);
+            }
+        };
+    }
+
+    /**
+     * @return square wave switching between 1 and -1 with the given frequency in Hz, starting with 1. Use it to
+     * press and release a button.
+     */
+    public static Waveform square(final float frequency) {
+        return new Waveform() {
+            @Override
+            public float getValue(double time) {
+                return phase(frequency, time) < .5 ? 1 : -1;
+            }
+        };
+    }
+
+    /**
+     * @return sawtooth wave rising from -1 to 1 with the given frequency in Hz
+     */
+    public static Waveform sawtooth(final float frequency) {
+        return new Waveform() {
+            @Override
+            public float getValue(double time) {
+                return (float) (phase(frequency, time) * 2 - 1);
+            }
+        };
+    }
+
+    /**
+     * @param stepDuration seconds every value is held
+     * @param values       values to step through, repeated after the last one
+     * @return waveform stepping through the given values
+     */
+    public static Waveform sequence(final float stepDuration, final float... values) {
+        if (values.length == 0 || stepDuration <= 0)
+            throw new IllegalArgumentException("Needs values and a positive step duration");
+
+        return new Waveform() {
+            @Override
+            public float getValue(double time) {
+                return values[(int) ((long) (time / stepDuration) % values.length)];
+            }
+        };
+    }
+
+    /**
+     * @param seed seed for the random generator, so that runs are reproducible
+     * @return waveform returning a new random value between -1 and 1 on every call
+     */
+    public static Waveform random(long seed) {
+        final Random random = new Random(seed);
+        return new Waveform() {
+            @Override
+            public float getValue(double time) {
+                return random.nextFloat() * 2 - 1;
+            }
+        };
+    }
+
+    private static double phase(float frequency, double time) {
+        double cycles = frequency * time;
+        return cycles - Math.floor(cycles);
+    }
+}
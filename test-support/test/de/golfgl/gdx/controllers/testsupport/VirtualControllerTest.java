@@ -0,0 +1,184 @@
+package de.golfgl.gdx.controllers.testsupport;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.controllers.ControllerAdapter;
+
+import org.junit.Test;
+
+import de.golfgl.gdx.controllers.mapping.ConfiguredInput;
+import de.golfgl.gdx.controllers.mapping.ControllerMappings;
+import de.golfgl.gdx.controllers.mapping.MappedControllerAdapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualControllerTest {
+
+    @Test
+    public void testListenersAndConnection() {
+        VirtualController controller = new VirtualController("Virtual", 4, 2);
+        CountingListener listener = new CountingListener();
+        controller.addListener(listener);
+
+        // nothing is sent while disconnected
+        controller.setButton(1, true);
+        assertFalse(controller.getButton(1));
+
+        controller.connect();
+        assertEquals(1, listener.connects);
+        controller.setButton(1, true);
+        controller.setButton(1, true);
+        controller.setAxis(0, .5f);
+        assertTrue(controller.getButton(1));
+        assertEquals(.5f, controller.getAxis(0), .0001f);
+        assertEquals(1, listener.buttonEvents);
+        assertEquals(1, listener.axisEvents);
+
+        controller.disconnect();
+        assertEquals(1, listener.disconnects);
+        assertFalse(controller.getButton(1));
+        assertEquals(0, controller.getAxis(0), .0001f);
+
+        // connected for one second, disconnected for half a second
+        controller.connect();
+        controller.setConnectionCycle(1f, .5f);
+        controller.update(1.25f);
+        assertFalse(controller.isConnected());
+        controller.update(.5f);
+        assertTrue(controller.isConnected());
+        assertEquals(2, listener.disconnects);
+        assertEquals(3, listener.connects);
+    }
+
+    @Test
+    public void testWaveforms() {
+        VirtualController controller = new VirtualController("Virtual", 2, 2);
+        CountingListener listener = new CountingListener();
+        controller.addListener(listener);
+        controller.connect();
+
+        // a changing value at 1 kHz is an event every millisecond
+        controller.setAxisWaveform(0, Waveform.sawtooth(.5f), 1000);
+        controller.update(.1f);
+        assertEquals(101, listener.axisEvents, 1);
+
+        // button pressed and released ten times a second
+        controller.setAxisWaveform(0, null, 0);
+        controller.setButtonWaveform(1, Waveform.square(10), 1000);
+        controller.update(1f);
+        assertEquals(20, listener.buttonEvents, 1);
+
+        controller.setButtonWaveform(1, null, 0);
+        controller.setAxisWaveform(1, Waveform.sequence(.1f, -1, 0, 1), 100);
+        controller.update(.15f);
+        assertEquals(0, controller.getAxis(1), .0001f);
+        controller.update(.1f);
+        assertEquals(1, controller.getAxis(1), .0001f);
+    }
+
+    @Test
+    public void testMappedControllerAdapterSoak() {
+        ControllerMappings mappings = new ControllerMappings();
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.button, 1));
+        mappings.addConfiguredInput(new ConfiguredInput(ConfiguredInput.Type.axisAnalog, 2));
+        mappings.commitConfig();
+
+        CountingAdapter adapter = new CountingAdapter(mappings);
+        VirtualController[] controllers = new VirtualController[16];
+        for (int i = 0; i < controllers.length; i++) {
+            controllers[i] = new VirtualController("Virtual", "Virtual" + i, 4, 4);
+            controllers[i].addListener(adapter);
+            controllers[i].connect();
+            controllers[i].setButtonWaveform(0, Waveform.square(7), 1000);
+            controllers[i].setAxisWaveform(1, Waveform.random(i), 1000);
+            controllers[i].setAxisWaveform(2, Waveform.sine(3), 1000);
+            controllers[i].setConnectionCycle(2f, .25f);
+        }
+        mappings.recordMapping(controllers[0], 1, 0, -1);
+        mappings.recordMapping(controllers[0], 2, -1, 1);
+
+        long events = 0;
+        for (int frame = 0; frame < 600; frame++) {
+            for (VirtualController controller : controllers)
+                controller.update(1 / 60f);
+        }
+        for (VirtualController controller : controllers)
+            events += controller.getEventCount();
+
+        // ten seconds at 1 kHz on three inputs of 16 controllers, minus the disconnected time
+        assertTrue(events > 16 * 1000 * 10);
+        // axis 2 is not mapped
+        assertTrue(adapter.configuredEvents > 0);
+        assertTrue(adapter.configuredEvents < events);
+        assertEquals(0, adapter.wrongEvents);
+    }
+
+    private static class CountingListener extends ControllerAdapter {
+        private int connects;
+        private int disconnects;
+        private int buttonEvents;
+        private int axisEvents;
+
+        @Override
+        public void connected(Controller controller) {
+            connects++;
+        }
+
+        @Override
+        public void disconnected(Controller controller) {
+            disconnects++;
+        }
+
+        @Override
+        public boolean buttonDown(Controller controller, int buttonIndex) {
+            buttonEvents++;
+            return true;
+        }
+
+        @Override
+        public boolean buttonUp(Controller controller, int buttonIndex) {
+            buttonEvents++;
+            return true;
+        }
+
+        @Override
+        public boolean axisMoved(Controller controller, int axisIndex, float value) {
+            axisEvents++;
+            return true;
+        }
+    }
+
+    private static class CountingAdapter extends MappedControllerAdapter {
+        private int configuredEvents;
+        private int wrongEvents;
+
+        private CountingAdapter(ControllerMappings mappings) {
+            super(mappings);
+        }
+
+        @Override
+        public boolean configuredButtonDown(Controller controller, int buttonId) {
+            configuredEvents++;
+            if (buttonId != 1)
+                wrongEvents++;
+            return true;
+        }
+
+        @Override
+        public boolean configuredButtonUp(Controller controller, int buttonId) {
+            configuredEvents++;
+            if (buttonId != 1)
+                wrongEvents++;
+            return true;
+        }
+
+        @Override
+        public boolean configuredAxisMoved(Controller controller, int axisId, float value) {
+            configuredEvents++;
+            if (axisId != 2 || value < -1 || value > 1)
+                wrongEvents++;
+            return true;
+        }
+    }
+}